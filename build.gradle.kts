@@ -7,6 +7,7 @@ plugins {
     application
     checkstyle
     id("com.github.johnrengelman.shadow") version "7.1.2"
+    id("me.champeau.jmh") version "0.6.8"
 }
 
 group = "hk.ust.comp3021"
@@ -48,6 +49,18 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter-engine:5.9.0")
 }
 
+jmh {
+    jmhVersion.set("1.35")
+    // Run a subset with e.g. `gradle jmh -PjmhIncludes=GameStateBenchmark`
+    (project.findProperty("jmhIncludes") as String?)?.let { includes.set(listOf(it)) }
+    profilers.set(listOf("gc"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    jvmArgsAppend.set(listOf("--enable-preview"))
+    resultFormat.set("JSON")
+}
+
 checkstyle {
     toolVersion = "10.3.2"
     sourceSets = setOf(project.sourceSets.main.get())
@@ -0,0 +1,107 @@
+package hk.ust.comp3021.benchmark;
+
+import hk.ust.comp3021.actions.Exit;
+import hk.ust.comp3021.game.InputEngine;
+import hk.ust.comp3021.replay.BinaryActionLog;
+import hk.ust.comp3021.replay.BinaryInputEngine;
+import hk.ust.comp3021.replay.ChannelInputEngine;
+import hk.ust.comp3021.replay.MappedInputEngine;
+import hk.ust.comp3021.replay.StreamInputEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of decoding a whole action file, compared with the former {@link Scanner}-based decoding.
+ * Binary readers decode the same actions converted by {@link BinaryActionLog}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ActionReaderBenchmark {
+
+    /**
+     * Number of action lines in the file, about two bytes each.
+     */
+    @Param({"4000000"})
+    public int lines;
+
+    @Param({"SCANNER", "STREAM", "CHANNEL", "MAPPED", "BINARY", "BINARY_RLE"})
+    public String reader;
+
+    private Path actionFile;
+
+    private Path binaryFile;
+
+    @Setup(Level.Trial)
+    public void writeActionFile() throws IOException {
+        actionFile = Files.createTempFile("actions", ".txt");
+        final var random = new Random(3021);
+        try (Writer writer = Files.newBufferedWriter(actionFile)) {
+            writer.write("0\n");
+            for (int i = 0; i < lines; i++) {
+                writer.write("HJKLU".charAt(random.nextInt(5)));
+                writer.write('\n');
+            }
+        }
+        binaryFile = Files.createTempFile("actions", ".bin");
+        final var encoding = reader.equals("BINARY_RLE") ? BinaryActionLog.Encoding.RUN_LENGTH : BinaryActionLog.Encoding.NIBBLE;
+        BinaryActionLog.convert(actionFile, binaryFile, encoding);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteActionFile() throws IOException {
+        Files.deleteIfExists(actionFile);
+        Files.deleteIfExists(binaryFile);
+    }
+
+    /**
+     * @return The number of actions decoded.
+     */
+    @Benchmark
+    public int readAll() throws IOException {
+        if (reader.equals("SCANNER"))
+            return readAllWithScanner();
+        final InputEngine inputEngine = switch (reader) {
+            case "STREAM" -> new StreamInputEngine(new FileInputStream(actionFile.toFile()));
+            case "CHANNEL" -> new ChannelInputEngine(actionFile);
+            case "MAPPED" -> new MappedInputEngine(actionFile);
+            case "BINARY", "BINARY_RLE" -> new BinaryInputEngine(binaryFile);
+            default -> throw new IllegalArgumentException("Unknown reader: " + reader);
+        };
+        var count = 0;
+        while (!(inputEngine.fetchAction() instanceof Exit))
+            count++;
+        return count;
+    }
+
+    /**
+     * The decoding of {@link StreamInputEngine} before it was based on {@link ChannelInputEngine}.
+     */
+    private int readAllWithScanner() throws IOException {
+        try (var scanner = new Scanner(new FileInputStream(actionFile.toFile()))) {
+            final var playerId = Integer.parseInt(scanner.nextLine());
+            var count = 0;
+            try {
+                while (true) {
+                    final var line = scanner.nextLine();
+                    try {
+                        if (!(StreamInputEngine.char2Action(playerId, line.charAt(0)) instanceof Exit))
+                            count++;
+                    } catch (IllegalArgumentException ignored) {
+                    }
+                }
+            } catch (NoSuchElementException e) {
+                return count;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package hk.ust.comp3021.benchmark;
+
+import hk.ust.comp3021.entities.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Maps used by the benchmarks.
+ * <p>
+ * A map is specified by either the name of a bundled map (e.g. {@code map00}),
+ * or a generated map in the form {@code <width>x<height>:<players>} (e.g. {@code 1000x1000:26}).
+ */
+final class BenchmarkMaps {
+
+    private BenchmarkMaps() {
+    }
+
+    /**
+     * @param spec The map specification.
+     * @return The text of the map, which can be parsed by {@link hk.ust.comp3021.game.GameMap#parse(String)}.
+     */
+    static @NotNull String load(@NotNull String spec) {
+        if (!spec.contains("x")) {
+            try (InputStream stream = BenchmarkMaps.class.getResourceAsStream("/" + spec + ".map")) {
+                if (stream == null)
+                    throw new IllegalArgumentException("Unknown map: " + spec);
+                return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        final var size = spec.split(":")[0].split("x");
+        final var players = spec.contains(":") ? Integer.parseInt(spec.split(":")[1]) : 1;
+        return generate(Integer.parseInt(size[0]), Integer.parseInt(size[1]), players);
+    }
+
+    /**
+     * Generate an open map with unlimited undo, bounded by walls.
+     * Each player {@code P} starts next to its box and a destination, laid out as {@code Pp@},
+     * and the row below every player is empty.
+     *
+     * @param width   The width of the map, including walls.
+     * @param height  The height of the map, including walls.
+     * @param players The number of players, from 1 to 26.
+     * @return The text of the map.
+     */
+    static @NotNull String generate(int width, int height, int players) {
+        final var perRow = (width - 2) / 3;
+        if (players < 1 || players > 26 || perRow == 0 || (players + perRow - 1) / perRow * 2 > height - 2)
+            throw new IllegalArgumentException("Map is too small for " + players + " players");
+        final var rows = new char[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final var border = x == 0 || y == 0 || x == width - 1 || y == height - 1;
+                rows[y][x] = border ? '#' : '.';
+            }
+        }
+        for (int id = 0; id < players; id++) {
+            final var x = 1 + 3 * (id % perRow);
+            final var y = 1 + 2 * (id / perRow);
+            rows[y][x] = Player.idToChar(id);
+            rows[y][x + 1] = Character.toLowerCase(Player.idToChar(id));
+            rows[y][x + 2] = '@';
+        }
+        final var builder = new StringBuilder("-1\n");
+        for (final var row : rows)
+            builder.append(row).append('\n');
+        return builder.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package hk.ust.comp3021.benchmark;
+
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.game.GameState;
+import hk.ust.comp3021.replay.ReplaySokobanGame;
+import hk.ust.comp3021.replay.TerminalRenderingEngine;
+import hk.ust.comp3021.replay.ThreadFactories;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stress benchmark of replaying many games concurrently, like {@link hk.ust.comp3021.Sokoban#replayGame},
+ * comparing platform threads with virtual threads.
+ * <p>
+ * Besides the wall time of replaying all games, the peak resident set size of the benchmark process is reported
+ * as the secondary result {@code peakRssKb} (Linux only, -1 elsewhere).
+ * Run each configuration in a fresh fork, since the peak never decreases within a process,
+ * and measure a single iteration, since JMH sums this counter over iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+public class FanOutBenchmark {
+
+    /**
+     * Number of games replayed concurrently.
+     */
+    @Param({"100", "1000", "10000"})
+    public int repeat;
+
+    @Param({"4"})
+    public int players;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public String threads;
+
+    private GameMap gameMap;
+
+    private ReplaySokobanGame.Options options;
+
+    /**
+     * The peak resident set size of the process, in kilobytes.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Memory {
+        public long peakRssKb;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        gameMap = GameMap.parse(BenchmarkMaps.generate(3 * players + 2, 4, players));
+        final var threadFactory = switch (threads) {
+            case "PLATFORM" -> ThreadFactories.platform();
+            case "VIRTUAL" -> {
+                if (!ThreadFactories.isVirtualSupported())
+                    System.err.println("Virtual threads are unavailable on this JVM; falling back to platform threads");
+                yield ThreadFactories.virtual();
+            }
+            default -> throw new IllegalArgumentException("Unknown threads: " + threads);
+        };
+        options = ReplaySokobanGame.Options.DEFAULT
+            .withRenderMode(ReplaySokobanGame.RenderMode.NONE)
+            .withThreadFactory(threadFactory);
+    }
+
+    @Benchmark
+    public void replay(Memory memory) throws InterruptedException {
+        final var renderingEngine = new TerminalRenderingEngine(new PrintStream(OutputStream.nullOutputStream()));
+        final var gameThreads = new Thread[repeat];
+        for (int i = 0; i < repeat; i++) {
+            final var inputEngines = new ArrayList<ScriptedInputEngine>(players);
+            for (int id = 0; id < players; id++)
+                inputEngines.add(new ScriptedInputEngine(id, "JK", 10));
+            final var game = new ReplaySokobanGame(
+                ReplaySokobanGame.Mode.FREE_RACE, 1, new GameState(gameMap), inputEngines, renderingEngine, options);
+            gameThreads[i] = options.threadFactory().newThread(game);
+        }
+        for (final var thread : gameThreads)
+            thread.start();
+        for (final var thread : gameThreads)
+            thread.join();
+        memory.peakRssKb = peakRssKb();
+    }
+
+    /**
+     * @return The peak resident set size of this process in kilobytes, or -1 if unavailable.
+     */
+    private static long peakRssKb() {
+        try {
+            for (final var line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:"))
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        } catch (IOException | NumberFormatException ignored) {
+            // Not on Linux.
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,66 @@
+package hk.ust.comp3021.benchmark;
+
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.game.GameState;
+import hk.ust.comp3021.replay.ReplaySokobanGame;
+import hk.ust.comp3021.replay.TerminalRenderingEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of replaying a whole game in {@link ReplaySokobanGame.Mode#FREE_RACE} mode without rendering,
+ * comparing processing actions one by one with processing batches of actions under one lock acquisition.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FreeRaceBenchmark {
+
+    @Param({"2", "8", "26"})
+    public int players;
+
+    @Param({"1", "64"})
+    public int batchSize;
+
+    /**
+     * Number of actions performed by each player.
+     */
+    @Param({"10000"})
+    public int actionsPerPlayer;
+
+    private GameMap gameMap;
+
+    private ReplaySokobanGame game;
+
+    @Setup(Level.Trial)
+    public void parse() {
+        gameMap = GameMap.parse(BenchmarkMaps.generate(3 * players + 2, 4, players));
+    }
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        final var inputEngines = new ArrayList<ScriptedInputEngine>(players);
+        for (int id = 0; id < players; id++)
+            inputEngines.add(new ScriptedInputEngine(id, "JK", actionsPerPlayer / 2));
+        final var options = ReplaySokobanGame.Options.DEFAULT
+            .withRenderMode(ReplaySokobanGame.RenderMode.NONE)
+            .withBatchSize(batchSize);
+        game = new ReplaySokobanGame(
+            ReplaySokobanGame.Mode.FREE_RACE,
+            1,
+            new GameState(gameMap),
+            inputEngines,
+            new TerminalRenderingEngine(new PrintStream(OutputStream.nullOutputStream())),
+            options
+        );
+    }
+
+    @Benchmark
+    public void replay() {
+        game.run();
+    }
+}
@@ -0,0 +1,30 @@
+package hk.ust.comp3021.benchmark;
+
+import hk.ust.comp3021.game.GameMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of parsing game maps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GameMapBenchmark {
+
+    @Param({"map00", "map01", "map02", "100x100:4", "1000x1000:26"})
+    public String map;
+
+    private String mapText;
+
+    @Setup
+    public void setup() {
+        mapText = BenchmarkMaps.load(map);
+    }
+
+    @Benchmark
+    public GameMap parse() {
+        return GameMap.parse(mapText);
+    }
+}
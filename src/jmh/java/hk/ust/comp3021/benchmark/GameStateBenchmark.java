@@ -0,0 +1,141 @@
+package hk.ust.comp3021.benchmark;
+
+import hk.ust.comp3021.entities.Box;
+import hk.ust.comp3021.entities.Empty;
+import hk.ust.comp3021.entities.Player;
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.game.GameState;
+import hk.ust.comp3021.game.Position;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Benchmarks of the operations of {@link GameState}, on both storage backends.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GameStateBenchmark {
+
+    @Param({"map00", "map01", "map02", "10x10:1", "100x100:4", "1000x1000:26"})
+    public String map;
+
+    @Param({"GRID", "MAP"})
+    public GameState.Backend backend;
+
+    private GameMap gameMap;
+
+    private GameState state;
+
+    /**
+     * Directions to search for the cells moved in {@link #moveAndBack()} and {@link #pushAndUndo()},
+     * tried down first so that generated maps move player 0 down and push its box right.
+     */
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
+
+    private Position mover;
+
+    private Position free;
+
+    private Position player;
+
+    private Position box;
+
+    private Position destination;
+
+    @Setup(Level.Trial)
+    public void parse() {
+        gameMap = GameMap.parse(BenchmarkMaps.load(map));
+    }
+
+    /**
+     * Find a box for player 0 to push, first from where the player stands,
+     * otherwise from an empty cell which the player is moved to before the iteration.
+     * Then find an entity next to an empty cell to move back and forth, preferring the player.
+     */
+    @Setup(Level.Iteration)
+    public void setup() {
+        state = new GameState(gameMap, backend);
+        player = state.getPlayerPositionById(0);
+        assert player != null;
+        if (!findPush(player)) {
+            final var from = findCell(position -> state.getEntity(position) instanceof Empty && findPush(position));
+            state.move(player, from);
+            state.checkpoint();
+            player = from;
+        }
+        mover = findFree(player) ? player : findCell(position ->
+            (state.getEntity(position) instanceof Box || state.getEntity(position) instanceof Player) && findFree(position));
+    }
+
+    private boolean findPush(Position from) {
+        for (final var direction : DIRECTIONS) {
+            final var next = Position.of(from.x() + direction[0], from.y() + direction[1]);
+            final var beyond = Position.of(next.x() + direction[0], next.y() + direction[1]);
+            if (state.getEntity(next) instanceof Box && state.getEntity(beyond) instanceof Empty) {
+                box = next;
+                destination = beyond;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean findFree(Position from) {
+        for (final var direction : DIRECTIONS) {
+            final var next = Position.of(from.x() + direction[0], from.y() + direction[1]);
+            if (state.getEntity(next) instanceof Empty) {
+                free = next;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Position findCell(Predicate<Position> predicate) {
+        for (int y = 0; y < state.getMapMaxHeight(); y++) {
+            for (int x = 0; x < state.getMapMaxWidth(); x++) {
+                final var position = Position.of(x, y);
+                if (predicate.test(position))
+                    return position;
+            }
+        }
+        throw new IllegalStateException("No cell to benchmark on " + map);
+    }
+
+    @Benchmark
+    public GameState createState() {
+        return new GameState(gameMap, backend);
+    }
+
+    @Benchmark
+    public GameState copyState() {
+        return state.copy();
+    }
+
+    @Benchmark
+    public void moveAndBack() {
+        state.move(mover, free);
+        state.move(free, mover);
+    }
+
+    @Benchmark
+    public void pushAndUndo() {
+        state.move(box, destination);
+        state.move(player, box);
+        state.checkpoint();
+        state.undo();
+    }
+
+    @Benchmark
+    public boolean isWin() {
+        return state.isWin();
+    }
+
+    @Benchmark
+    public Position getPlayerPosition() {
+        return state.getPlayerPositionById(0);
+    }
+}
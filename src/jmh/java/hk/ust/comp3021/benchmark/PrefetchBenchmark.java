@@ -0,0 +1,79 @@
+package hk.ust.comp3021.benchmark;
+
+import hk.ust.comp3021.actions.Exit;
+import hk.ust.comp3021.game.InputEngine;
+import hk.ust.comp3021.replay.ChannelInputEngine;
+import hk.ust.comp3021.replay.PrefetchingInputEngine;
+import hk.ust.comp3021.replay.ThreadFactories;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of replaying an action file with some work per action,
+ * with actions decoded in the consuming thread or ahead by a {@link PrefetchingInputEngine}.
+ * Decoding only overlaps with the work on a machine with more than one core.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PrefetchBenchmark {
+
+    @Param({"1000000"})
+    public int lines;
+
+    /**
+     * Amount of work per action, in {@link Blackhole#consumeCPU(long)} tokens.
+     */
+    @Param({"0", "50"})
+    public int work;
+
+    /**
+     * Capacity of the prefetching buffer, or 0 to decode actions in the consuming thread.
+     */
+    @Param({"0", "1024"})
+    public int prefetchCapacity;
+
+    private Path actionFile;
+
+    @Setup(Level.Trial)
+    public void writeActionFile() throws IOException {
+        actionFile = Files.createTempFile("actions", ".txt");
+        final var random = new Random(3021);
+        try (Writer writer = Files.newBufferedWriter(actionFile)) {
+            writer.write("0\n");
+            for (int i = 0; i < lines; i++) {
+                writer.write("HJKLU".charAt(random.nextInt(5)));
+                writer.write('\n');
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteActionFile() throws IOException {
+        Files.deleteIfExists(actionFile);
+    }
+
+    /**
+     * @return The number of actions replayed.
+     */
+    @Benchmark
+    public int replay() throws IOException {
+        final InputEngine source = new ChannelInputEngine(actionFile);
+        final var inputEngine = prefetchCapacity > 0
+            ? new PrefetchingInputEngine(source, prefetchCapacity, ThreadFactories.platform())
+            : source;
+        var count = 0;
+        while (!(inputEngine.fetchAction() instanceof Exit)) {
+            Blackhole.consumeCPU(work);
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,80 @@
+package hk.ust.comp3021.benchmark;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.actions.ActionResult;
+import hk.ust.comp3021.game.AbstractSokobanGame;
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.game.GameState;
+import hk.ust.comp3021.replay.StreamInputEngine;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link AbstractSokobanGame#processAction}, with players taking turns to perform actions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProcessActionBenchmark {
+
+    @Param({"map00", "map01", "map02", "100x100:1", "100x100:26", "1000x1000:26"})
+    public String map;
+
+    /**
+     * Actions performed by each player in turn, in the format of action files.
+     * Every mix brings the players on generated maps back to their initial positions.
+     */
+    @Param({"JK", "LU", "JKLU"})
+    public String actionMix;
+
+    private GameMap gameMap;
+
+    private Game game;
+
+    private Action[] actions;
+
+    private int next;
+
+    /**
+     * A game that exposes {@link AbstractSokobanGame#processAction}.
+     */
+    private static class Game extends AbstractSokobanGame {
+        Game(@NotNull GameState gameState) {
+            super(gameState);
+        }
+
+        ActionResult process(@NotNull Action action) {
+            return processAction(action);
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void parse() {
+        gameMap = GameMap.parse(BenchmarkMaps.load(map));
+        final var players = gameMap.getPlayerIds().stream().sorted().toList();
+        actions = new Action[players.size() * actionMix.length()];
+        for (int i = 0; i < actions.length; i++) {
+            final var player = players.get(i % players.size());
+            actions[i] = StreamInputEngine.char2Action(player, actionMix.charAt(i / players.size()));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        game = new Game(new GameState(gameMap));
+        next = 0;
+    }
+
+    @Benchmark
+    public ActionResult processAction() {
+        final var result = game.process(actions[next]);
+        next = next + 1 == actions.length ? 0 : next + 1;
+        return result;
+    }
+}
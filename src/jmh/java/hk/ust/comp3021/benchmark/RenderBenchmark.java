@@ -0,0 +1,41 @@
+package hk.ust.comp3021.benchmark;
+
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.game.GameState;
+import hk.ust.comp3021.replay.TerminalRenderingEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of rendering a game state to a stream that discards the output.
+ * The state does not change, so incremental styles print only the first frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RenderBenchmark {
+
+    @Param({"map00", "map01", "map02", "100x100:4", "1000x1000:26"})
+    public String map;
+
+    @Param({"FULL", "ANSI", "DIFF"})
+    public TerminalRenderingEngine.Style style;
+
+    private GameState state;
+
+    private TerminalRenderingEngine renderingEngine;
+
+    @Setup
+    public void setup() {
+        state = new GameState(GameMap.parse(BenchmarkMaps.load(map)));
+        renderingEngine = new TerminalRenderingEngine(new PrintStream(OutputStream.nullOutputStream()), style);
+    }
+
+    @Benchmark
+    public void render() {
+        renderingEngine.render(state);
+    }
+}
@@ -0,0 +1,34 @@
+package hk.ust.comp3021.benchmark;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.actions.Exit;
+import hk.ust.comp3021.game.InputEngine;
+import hk.ust.comp3021.replay.StreamInputEngine;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An input engine that replays a fixed script of actions from memory, so that benchmarks of games do not measure I/O.
+ * After the script is exhausted, {@link Exit} is returned forever.
+ */
+final class ScriptedInputEngine implements InputEngine {
+
+    private final Action[] actions;
+
+    private int next = 0;
+
+    /**
+     * @param playerId The id of the player performing the actions.
+     * @param script   The actions in the format of action files, e.g. {@code JK}.
+     * @param repeat   The number of times to repeat the script.
+     */
+    ScriptedInputEngine(int playerId, @NotNull String script, int repeat) {
+        this.actions = new Action[script.length() * repeat];
+        for (int i = 0; i < actions.length; i++)
+            actions[i] = StreamInputEngine.char2Action(playerId, script.charAt(i % script.length()));
+    }
+
+    @Override
+    public @NotNull Action fetchAction() {
+        return next < actions.length ? actions[next++] : new Exit(-1);
+    }
+}
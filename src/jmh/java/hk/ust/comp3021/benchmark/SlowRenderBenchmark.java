@@ -0,0 +1,76 @@
+package hk.ust.comp3021.benchmark;
+
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.game.GameState;
+import hk.ust.comp3021.game.RenderingEngine;
+import hk.ust.comp3021.replay.ReplaySokobanGame;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Benchmarks of replaying a whole game with a rendering engine slower than the frame interval,
+ * comparing rendering under the game lock with rendering snapshots outside of it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SlowRenderBenchmark {
+
+    @Param({"PACED", "SNAPSHOT"})
+    public ReplaySokobanGame.RenderMode renderMode;
+
+    /**
+     * Time taken by each render, in microseconds.
+     */
+    @Param({"2000"})
+    public int renderMicros;
+
+    @Param({"1000"})
+    public int frameRate;
+
+    @Param({"200000"})
+    public int actionsPerPlayer;
+
+    private GameMap gameMap;
+
+    private ReplaySokobanGame game;
+
+    @Setup(Level.Trial)
+    public void parse() {
+        gameMap = GameMap.parse(BenchmarkMaps.generate(8, 4, 2));
+    }
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        final var inputEngines = new ArrayList<ScriptedInputEngine>(2);
+        for (int id = 0; id < 2; id++)
+            inputEngines.add(new ScriptedInputEngine(id, "JK", actionsPerPlayer / 2));
+        final var renderingEngine = new RenderingEngine() {
+            @Override
+            public void render(@NotNull GameState state) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(renderMicros));
+            }
+
+            @Override
+            public void message(@NotNull String content) {
+            }
+        };
+        game = new ReplaySokobanGame(
+            ReplaySokobanGame.Mode.FREE_RACE,
+            frameRate,
+            new GameState(gameMap),
+            inputEngines,
+            renderingEngine,
+            ReplaySokobanGame.Options.DEFAULT.withRenderMode(renderMode)
+        );
+    }
+
+    @Benchmark
+    public void replay() {
+        game.run();
+    }
+}
@@ -0,0 +1,51 @@
+package hk.ust.comp3021.benchmark;
+
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.solver.ParallelSolver;
+import hk.ust.comp3021.solver.Solver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of solving the bundled single-player maps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SolverBenchmark {
+
+    @Param({"map00", "map01"})
+    public String map;
+
+    @Param({"MOVES", "PUSHES"})
+    public Solver.Metric metric;
+
+    private GameMap gameMap;
+
+    private Solver solver;
+
+    private ParallelSolver parallelSolver;
+
+    @Setup(Level.Trial)
+    public void parse() {
+        gameMap = GameMap.parse(BenchmarkMaps.load(map));
+        solver = new Solver(gameMap);
+        parallelSolver = new ParallelSolver();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        parallelSolver.close();
+    }
+
+    @Benchmark
+    public Solver.Result solve() {
+        return solver.solve(metric);
+    }
+
+    @Benchmark
+    public Solver.Result solveParallel() {
+        return parallelSolver.solve(gameMap, metric);
+    }
+}
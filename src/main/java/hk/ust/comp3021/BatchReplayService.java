@@ -0,0 +1,248 @@
+package hk.ust.comp3021;
+
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.game.InputEngine;
+import hk.ust.comp3021.replay.ReplaySokobanGame;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A service replaying many games in parallel.
+ * <p>
+ * Each map file is read and parsed once, and the parsed {@link GameMap}, which is never modified by games,
+ * is shared by all games on it.
+ * Games run either on a work-stealing pool of a bounded number of workers, by default the number of available processors,
+ * or all at once, each in a thread of a given {@link ThreadFactory}.
+ * Each game still runs its input engines and rendering engine in threads of its own
+ * (see {@link ReplaySokobanGame#run()}).
+ * The results of all games are collected into a {@link Summary}.
+ */
+public class BatchReplayService implements AutoCloseable {
+
+    /**
+     * A game to replay.
+     *
+     * @param mapFile     The map file.
+     * @param mode        The mode of the game.
+     * @param frameRate   The rendering frame rate.
+     * @param actionFiles The action files.
+     * @param options     The options of running the game.
+     * @param inputKind   The kind of input engines reading the action files.
+     */
+    public record Job(
+        @NotNull Path mapFile,
+        @NotNull ReplaySokobanGame.Mode mode,
+        int frameRate,
+        @NotNull List<Path> actionFiles,
+        @NotNull ReplaySokobanGame.Options options,
+        @NotNull SokobanGameFactory.InputKind inputKind
+    ) {
+    }
+
+    /**
+     * The result of replaying a game.
+     *
+     * @param index    The index of the game in the batch.
+     * @param win      Whether the game was won.
+     * @param steps    The number of actions processed, excluding exits.
+     * @param duration The time taken to create and run the game.
+     * @param failure  The exception thrown by the game, or null if it finished normally.
+     */
+    public record GameResult(int index, boolean win, long steps, @NotNull Duration duration, @Nullable Throwable failure) {
+    }
+
+    /**
+     * The results of replaying a batch of games.
+     *
+     * @param results  The results of all games, in the order of the batch.
+     * @param wins     The number of games won.
+     * @param failures The number of games that threw an exception.
+     * @param steps    The total number of actions processed.
+     * @param wallTime The time taken to replay the batch.
+     */
+    public record Summary(@NotNull List<GameResult> results, int wins, int failures, long steps, @NotNull Duration wallTime) {
+
+        /**
+         * @return The number of games replayed per second of wall time.
+         */
+        public double gamesPerSecond() {
+            final var nanos = wallTime.toNanos();
+            return nanos == 0 ? 0 : results.size() * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Replayed %d games in %d ms (%.1f games/s): %d won, %d failed, %d steps",
+                results.size(), wallTime.toMillis(), gamesPerSecond(), wins, failures, steps);
+        }
+    }
+
+    private final ExecutorService pool;
+
+    /**
+     * Parsed maps, keyed by the absolute paths of map files.
+     */
+    private final ConcurrentMap<Path, GameMap> maps = new ConcurrentHashMap<>();
+
+    /**
+     * Create a service running as many games at a time as there are available processors.
+     */
+    public BatchReplayService() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism The maximum number of games running at a time.
+     */
+    public BatchReplayService(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        this.pool = Executors.newWorkStealingPool(parallelism);
+    }
+
+    /**
+     * Create a service starting every game as soon as it is submitted, each in a thread of its own.
+     * Suits games paced by their frame rate, which mostly wait, and factories of cheap threads
+     * such as {@link hk.ust.comp3021.replay.ThreadFactories#virtual()}.
+     *
+     * @param threadFactory The factory of threads running the games.
+     */
+    public BatchReplayService(@NotNull ThreadFactory threadFactory) {
+        this.pool = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    /**
+     * Get the parsed map of a map file, reading and parsing it on the first request only.
+     *
+     * @param mapFile The map file.
+     * @return The parsed game map.
+     * @throws IOException if the map file cannot be read.
+     */
+    public @NotNull GameMap loadMap(@NotNull Path mapFile) throws IOException {
+        try {
+            return maps.computeIfAbsent(mapFile.toAbsolutePath().normalize(), file -> {
+                try {
+                    return SokobanGameFactory.loadGameMap(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Replay a game several times in parallel.
+     *
+     * @param job    The game to replay.
+     * @param repeat The number of times to replay it.
+     * @return The summary of the games.
+     * @throws IOException          if the map file cannot be read.
+     * @throws InterruptedException if interrupted while waiting for the games.
+     */
+    public @NotNull Summary replay(@NotNull Job job, int repeat) throws IOException, InterruptedException {
+        return replayAll(Collections.nCopies(repeat, job));
+    }
+
+    /**
+     * Replay a batch of games in parallel.
+     * All map files are parsed before any game starts,
+     * and action files are opened when their games start and closed when they end.
+     * An exception thrown by a game, including failing to open its action files, is recorded in its result.
+     *
+     * @param jobs The games to replay.
+     * @return The summary of the games.
+     * @throws IOException          if any map file cannot be read.
+     * @throws InterruptedException if interrupted while waiting for the games.
+     */
+    public @NotNull Summary replayAll(@NotNull List<Job> jobs) throws IOException, InterruptedException {
+        final var gameMaps = new ArrayList<GameMap>(jobs.size());
+        for (final var job : jobs)
+            gameMaps.add(loadMap(job.mapFile()));
+        final var start = System.nanoTime();
+        final var futures = new ArrayList<Future<GameResult>>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            final var index = i;
+            futures.add(pool.submit(() -> runGame(index, gameMaps.get(index), jobs.get(index))));
+        }
+        final var results = new ArrayList<GameResult>(jobs.size());
+        try {
+            for (final var future : futures)
+                results.add(future.get());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A game escaped its result", e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        final var wallTime = Duration.ofNanos(System.nanoTime() - start);
+        var wins = 0;
+        var failures = 0;
+        var steps = 0L;
+        for (final var result : results) {
+            wins += result.win() ? 1 : 0;
+            failures += result.failure() != null ? 1 : 0;
+            steps += result.steps();
+        }
+        return new Summary(List.copyOf(results), wins, failures, steps, wallTime);
+    }
+
+    private static @NotNull GameResult runGame(int index, @NotNull GameMap gameMap, @NotNull Job job) {
+        final var start = System.nanoTime();
+        final var inputEngines = new ArrayList<InputEngine>(job.actionFiles().size());
+        ReplaySokobanGame game = null;
+        try {
+            for (final var actionFile : job.actionFiles())
+                inputEngines.add(SokobanGameFactory.createInputEngine(actionFile, job.inputKind()));
+            game = SokobanGameFactory.createReplayGame(gameMap, job.mode(), job.frameRate(), inputEngines, job.options());
+            game.run();
+            return new GameResult(index, game.isWin(), game.getProcessedActions(), Duration.ofNanos(System.nanoTime() - start), null);
+        } catch (IOException e) {
+            return new GameResult(index, false, 0, Duration.ofNanos(System.nanoTime() - start), new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+            final var steps = game == null ? 0 : game.getProcessedActions();
+            return new GameResult(index, false, steps, Duration.ofNanos(System.nanoTime() - start), e);
+        } finally {
+            closeAll(inputEngines);
+        }
+    }
+
+    /**
+     * Close the input engines of a game, which may stop reading before the end of their files,
+     * e.g. after an {@link hk.ust.comp3021.actions.Exit} action or a win.
+     */
+    private static void closeAll(@NotNull List<InputEngine> inputEngines) {
+        for (final var inputEngine : inputEngines) {
+            if (!(inputEngine instanceof AutoCloseable closeable))
+                continue;
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                // The game is over, and failing to release a file does not change its result.
+            }
+        }
+    }
+
+    /**
+     * Stop the workers after the games submitted have finished.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -1,9 +1,14 @@
 package hk.ust.comp3021;
 
+import hk.ust.comp3021.replay.PrefetchingInputEngine;
 import hk.ust.comp3021.replay.ReplaySokobanGame;
+import hk.ust.comp3021.replay.TerminalRenderingEngine;
+import hk.ust.comp3021.replay.ThreadFactories;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.Arrays;
 
 /**
@@ -17,8 +22,55 @@ public class Sokoban {
      * @param args The command line args.
      */
     public static void main(@NotNull String[] args) {
+        var options = ReplaySokobanGame.Options.DEFAULT;
+        var inputKind = SokobanGameFactory.InputKind.STREAM;
+        var summary = false;
+        var flags = 0;
+        try {
+            for (; flags < args.length && args[flags].startsWith("--"); flags++) {
+                if (args[flags].startsWith("--input=")) {
+                    inputKind = SokobanGameFactory.InputKind.valueOf(args[flags].substring("--input=".length()).toUpperCase());
+                    continue;
+                }
+                if (args[flags].startsWith("--render=")) {
+                    final var style = args[flags].substring("--render=".length()).toUpperCase();
+                    options = options.withTerminalStyle(TerminalRenderingEngine.Style.valueOf(style));
+                    continue;
+                }
+                if (args[flags].startsWith("--batch=")) {
+                    options = options.withBatchSize(Integer.parseInt(args[flags].substring("--batch=".length())));
+                    continue;
+                }
+                if (args[flags].startsWith("--prefetch=")) {
+                    options = options.withPrefetchCapacity(Integer.parseInt(args[flags].substring("--prefetch=".length())));
+                    continue;
+                }
+                if (args[flags].equals("--summary")) {
+                    summary = true;
+                    continue;
+                }
+                options = switch (args[flags]) {
+                    case "--headless" -> options.withRenderMode(ReplaySokobanGame.RenderMode.FINAL_FRAME);
+                    case "--headless=none" -> options.withRenderMode(ReplaySokobanGame.RenderMode.NONE);
+                    case "--snapshot" -> options.withRenderMode(ReplaySokobanGame.RenderMode.SNAPSHOT);
+                    case "--drop-frames" -> options.withFramePolicy(ReplaySokobanGame.FramePolicy.DROP);
+                    case "--single-thread" -> options.withScheduler(ReplaySokobanGame.Scheduler.SINGLE_THREAD);
+                    case "--virtual-threads" -> options.withThreadFactory(ThreadFactories.virtual());
+                    case "--prefetch" -> options.withPrefetchCapacity(PrefetchingInputEngine.DEFAULT_CAPACITY);
+                    default -> throw new IllegalArgumentException("Invalid flag: " + args[flags]);
+                };
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("IllegalArgument: " + e);
+            System.exit(1);
+            return;
+        }
+        args = Arrays.copyOfRange(args, flags, args.length);
         if (args.length < 5) {
-            System.out.println("Usage: java -jar Sokoban.jar <repeat> <map_file> <mode> <fps> <action_file> [<action_file> ...]");
+            System.out.println("Usage: java -jar Sokoban.jar [--headless[=none]] [--snapshot] [--drop-frames] "
+                + "[--render=full|ansi|diff] [--single-thread] [--virtual-threads] "
+                + "[--input=stream|channel|mapped|binary] [--batch=<size>] [--prefetch[=<capacity>]] [--summary] "
+                + "<repeat> <map_file> <mode> <fps> <action_file> [<action_file> ...]");
             System.exit(1);
             return;
         }
@@ -32,7 +84,12 @@ public class Sokoban {
                 }
             };
             final var fps = Integer.parseInt(args[3]);
-            replayGame(repeat, args[1], mode, fps, Arrays.copyOfRange(args, 4, args.length));
+            final var actionFiles = Arrays.copyOfRange(args, 4, args.length);
+            if (summary) {
+                System.out.println(replayGames(repeat, args[1], mode, fps, actionFiles, options, inputKind));
+            } else {
+                replayGame(repeat, args[1], mode, fps, actionFiles, options, inputKind);
+            }
         } catch (IOException e) {
             System.out.println("Failed to open files: " + e);
             System.exit(1);
@@ -64,19 +121,67 @@ public class Sokoban {
                                   int fps,
                                   @NotNull String[] actionFiles
     ) throws IOException, InterruptedException {
-        final var threads = new Thread[repeat];
-        for (int i = 0; i < repeat; i++) {
-            final var game = SokobanGameFactory.createReplayGame(mapFile, mode, fps, actionFiles);
-            final var thread = new Thread(game);
-            threads[i] = thread;
-        }
-        for (final var th :
-            threads) {
-            th.start();
+        replayGame(repeat, mapFile, mode, fps, actionFiles, ReplaySokobanGame.Options.DEFAULT, SokobanGameFactory.InputKind.STREAM);
+    }
+
+    /**
+     * @param repeat      number of times to repeat the game in parallel
+     * @param mapFile     map file
+     * @param mode        mode of the game
+     * @param fps         rendering fps
+     * @param actionFiles action files
+     * @param options     options of running each game, whose thread factory also runs each game
+     * @param inputKind   kind of input engines reading the action files
+     * @throws IOException          if mapFile or any action file cannot be load
+     * @throws InterruptedException if the game is interrupted
+     */
+    public static void replayGame(int repeat,
+                                  @NotNull String mapFile,
+                                  ReplaySokobanGame.Mode mode,
+                                  int fps,
+                                  @NotNull String[] actionFiles,
+                                  @NotNull ReplaySokobanGame.Options options,
+                                  @NotNull SokobanGameFactory.InputKind inputKind
+    ) throws IOException, InterruptedException {
+        final var summary = replayGames(repeat, mapFile, mode, fps, actionFiles, options, inputKind);
+        for (final var result : summary.results()) {
+            if (result.failure() == null)
+                continue;
+            if (result.failure() instanceof UncheckedIOException e)
+                throw e.getCause();
+            if (result.failure() instanceof RuntimeException e)
+                throw e;
+            throw new IllegalStateException(result.failure());
         }
-        for (final var th :
-            threads) {
-            th.join();
+    }
+
+    /**
+     * Replay a game several times in parallel with a {@link BatchReplayService}, parsing the map file once.
+     * All games run at once, each in a thread of {@link ReplaySokobanGame.Options#threadFactory()}.
+     *
+     * @param repeat      number of times to repeat the game in parallel
+     * @param mapFile     map file
+     * @param mode        mode of the game
+     * @param fps         rendering fps
+     * @param actionFiles action files
+     * @param options     options of running each game
+     * @param inputKind   kind of input engines reading the action files
+     * @return the summary of the games, including those failed
+     * @throws IOException          if mapFile cannot be load
+     * @throws InterruptedException if the game is interrupted
+     */
+    public static @NotNull BatchReplayService.Summary replayGames(int repeat,
+                                                                  @NotNull String mapFile,
+                                                                  ReplaySokobanGame.Mode mode,
+                                                                  int fps,
+                                                                  @NotNull String[] actionFiles,
+                                                                  @NotNull ReplaySokobanGame.Options options,
+                                                                  @NotNull SokobanGameFactory.InputKind inputKind
+    ) throws IOException, InterruptedException {
+        final var job = new BatchReplayService.Job(Path.of(mapFile), mode, fps,
+            Arrays.stream(actionFiles).map(Path::of).toList(), options, inputKind);
+        try (var service = new BatchReplayService(options.threadFactory())) {
+            return service.replay(job, repeat);
         }
     }
 }
@@ -2,25 +2,53 @@ package hk.ust.comp3021;
 
 import hk.ust.comp3021.game.GameMap;
 import hk.ust.comp3021.game.GameState;
+import hk.ust.comp3021.game.InputEngine;
 import hk.ust.comp3021.game.SokobanGame;
+import hk.ust.comp3021.replay.BinaryInputEngine;
+import hk.ust.comp3021.replay.ChannelInputEngine;
+import hk.ust.comp3021.replay.MappedInputEngine;
 import hk.ust.comp3021.replay.ReplaySokobanGame;
 import hk.ust.comp3021.replay.StreamInputEngine;
 import hk.ust.comp3021.replay.TerminalRenderingEngine;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Factory for creating Sokoban games
  */
 public class SokobanGameFactory {
 
+    /**
+     * Kind of input engines reading action files.
+     */
+    public enum InputKind {
+        /**
+         * {@link StreamInputEngine} over a {@link FileInputStream}.
+         */
+        STREAM,
+
+        /**
+         * {@link ChannelInputEngine} over a {@link java.nio.channels.FileChannel}.
+         */
+        CHANNEL,
+
+        /**
+         * {@link MappedInputEngine}, which maps the action file into memory.
+         */
+        MAPPED,
+
+        /**
+         * {@link BinaryInputEngine}, which reads binary action logs (see {@link hk.ust.comp3021.replay.BinaryActionLog}).
+         */
+        BINARY,
+    }
+
     /**
      * Create a Sokoban game.
      *
@@ -35,25 +63,137 @@ public class SokobanGameFactory {
                                                         @NotNull ReplaySokobanGame.Mode mode,
                                                         int frameRate,
                                                         @NotNull String[] actionFiles
+    ) throws IOException {
+        return createReplayGame(mapFile, mode, frameRate, actionFiles, ReplaySokobanGame.Options.DEFAULT);
+    }
+
+    /**
+     * Create a Sokoban game with the given options.
+     *
+     * @param mapFile     Map file.
+     * @param mode        Mode of the game.
+     * @param frameRate   Rendering frameRate.
+     * @param actionFiles Action files.
+     * @param options     Options of running the game.
+     * @return The Sokoban game.
+     * @throws IOException if mapFile cannot be load
+     */
+    public static @NotNull SokobanGame createReplayGame(@NotNull String mapFile,
+                                                        @NotNull ReplaySokobanGame.Mode mode,
+                                                        int frameRate,
+                                                        @NotNull String[] actionFiles,
+                                                        @NotNull ReplaySokobanGame.Options options
+    ) throws IOException {
+        return createReplayGame(mapFile, mode, frameRate, actionFiles, options, InputKind.STREAM);
+    }
+
+    /**
+     * Create a Sokoban game with the given options, reading action files with the given kind of input engines.
+     *
+     * @param mapFile     Map file.
+     * @param mode        Mode of the game.
+     * @param frameRate   Rendering frameRate.
+     * @param actionFiles Action files.
+     * @param options     Options of running the game.
+     * @param inputKind   Kind of input engines reading the action files.
+     * @return The Sokoban game.
+     * @throws IOException if mapFile or any action file cannot be load
+     */
+    public static @NotNull SokobanGame createReplayGame(@NotNull String mapFile,
+                                                        @NotNull ReplaySokobanGame.Mode mode,
+                                                        int frameRate,
+                                                        @NotNull String[] actionFiles,
+                                                        @NotNull ReplaySokobanGame.Options options,
+                                                        @NotNull InputKind inputKind
     ) throws IOException {
         Path file = Path.of(mapFile);
         final var gameMap = loadGameMap(file);
-        final var inputEngines = Arrays.stream(actionFiles).map(f -> {
-            try {
-                return new StreamInputEngine(new FileInputStream(f));
-            } catch (FileNotFoundException e) {
-                throw new RuntimeException(e);
+        return createReplayGame(gameMap, mode, frameRate, actionFiles, options, inputKind);
+    }
+
+    /**
+     * Create a Sokoban game from a parsed game map, which may be shared by many games.
+     *
+     * @param gameMap     Game map.
+     * @param mode        Mode of the game.
+     * @param frameRate   Rendering frameRate.
+     * @param actionFiles Action files.
+     * @param options     Options of running the game.
+     * @param inputKind   Kind of input engines reading the action files.
+     * @return The Sokoban game.
+     * @throws IOException if any action file cannot be load
+     */
+    public static @NotNull ReplaySokobanGame createReplayGame(@NotNull GameMap gameMap,
+                                                              @NotNull ReplaySokobanGame.Mode mode,
+                                                              int frameRate,
+                                                              @NotNull String[] actionFiles,
+                                                              @NotNull ReplaySokobanGame.Options options,
+                                                              @NotNull InputKind inputKind
+    ) throws IOException {
+        final var inputEngines = new ArrayList<InputEngine>(actionFiles.length);
+        try {
+            for (final var actionFile : actionFiles) {
+                inputEngines.add(createInputEngine(Path.of(actionFile), inputKind));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Close the action files already opened.
+            for (final var inputEngine : inputEngines) {
+                if (!(inputEngine instanceof AutoCloseable closeable))
+                    continue;
+                try {
+                    closeable.close();
+                } catch (Exception suppressed) {
+                    e.addSuppressed(suppressed);
+                }
             }
-        }).collect(Collectors.toList());
+            throw e;
+        }
+        return createReplayGame(gameMap, mode, frameRate, inputEngines, options);
+    }
+
+    /**
+     * Create a Sokoban game from a parsed game map, which may be shared by many games, and the given input engines.
+     * The input engines are not closed by the game.
+     *
+     * @param gameMap      Game map.
+     * @param mode         Mode of the game.
+     * @param frameRate    Rendering frameRate.
+     * @param inputEngines Input engines, e.g. created by {@link #createInputEngine(Path, InputKind)}.
+     * @param options      Options of running the game.
+     * @return The Sokoban game.
+     */
+    public static @NotNull ReplaySokobanGame createReplayGame(@NotNull GameMap gameMap,
+                                                              @NotNull ReplaySokobanGame.Mode mode,
+                                                              int frameRate,
+                                                              @NotNull List<? extends InputEngine> inputEngines,
+                                                              @NotNull ReplaySokobanGame.Options options
+    ) {
         return new ReplaySokobanGame(
                 mode,
                 frameRate,
                 new GameState(gameMap),
                 inputEngines,
-                new TerminalRenderingEngine(System.out)
+                new TerminalRenderingEngine(System.out, options.terminalStyle()),
+                options
         );
     }
 
+    /**
+     * @param actionFile The action file.
+     * @param inputKind  Kind of the input engine.
+     * @return The input engine reading the action file, which is {@link AutoCloseable} to close the file.
+     * @throws IOException if the action file cannot be opened.
+     */
+    public static @NotNull InputEngine createInputEngine(@NotNull Path actionFile, @NotNull InputKind inputKind)
+        throws IOException {
+        return switch (inputKind) {
+            case STREAM -> new StreamInputEngine(new FileInputStream(actionFile.toFile()));
+            case CHANNEL -> new ChannelInputEngine(actionFile);
+            case MAPPED -> new MappedInputEngine(actionFile);
+            case BINARY -> new BinaryInputEngine(actionFile);
+        };
+    }
+
     /**
      * @param mapFile The file containing the game map.
      * @return The parsed game map.
@@ -19,7 +19,29 @@ public abstract sealed class Move extends Action permits Move.Down, Move.Left, M
      * @param currentPosition The current position.
      * @return The next position.
      */
-    public abstract @NotNull Position nextPosition(@NotNull Position currentPosition);
+    public @NotNull Position nextPosition(@NotNull Position currentPosition) {
+        return Position.of(currentPosition.x() + dx(), currentPosition.y() + dy());
+    }
+
+    /**
+     * Generates the next position after the move based on the current position, without creating any objects.
+     *
+     * @param currentPosition The current position, packed by {@link Position#pack(int, int)}.
+     * @return The next position, packed by {@link Position#pack(int, int)}.
+     */
+    public long nextPosition(long currentPosition) {
+        return Position.neighbor(currentPosition, dx(), dy());
+    }
+
+    /**
+     * @return The horizontal displacement of the move.
+     */
+    public abstract int dx();
+
+    /**
+     * @return The vertical displacement of the move.
+     */
+    public abstract int dy();
 
     /**
      * The action of moving down.
@@ -35,8 +57,13 @@ public abstract sealed class Move extends Action permits Move.Down, Move.Left, M
 
 
         @Override
-        public @NotNull Position nextPosition(@NotNull Position currentPosition) {
-            return Position.of(currentPosition.x(), currentPosition.y() + 1);
+        public int dx() {
+            return 0;
+        }
+
+        @Override
+        public int dy() {
+            return 1;
         }
 
 
@@ -58,8 +85,13 @@ public abstract sealed class Move extends Action permits Move.Down, Move.Left, M
         }
 
         @Override
-        public @NotNull Position nextPosition(@NotNull Position currentPosition) {
-            return Position.of(currentPosition.x() - 1, currentPosition.y());
+        public int dx() {
+            return -1;
+        }
+
+        @Override
+        public int dy() {
+            return 0;
         }
 
         @Override
@@ -80,8 +112,13 @@ public abstract sealed class Move extends Action permits Move.Down, Move.Left, M
         }
 
         @Override
-        public @NotNull Position nextPosition(@NotNull Position currentPosition) {
-            return Position.of(currentPosition.x() + 1, currentPosition.y());
+        public int dx() {
+            return 1;
+        }
+
+        @Override
+        public int dy() {
+            return 0;
         }
 
         @Override
@@ -102,8 +139,13 @@ public abstract sealed class Move extends Action permits Move.Down, Move.Left, M
         }
 
         @Override
-        public @NotNull Position nextPosition(@NotNull Position currentPosition) {
-            return Position.of(currentPosition.x(), currentPosition.y() - 1);
+        public int dx() {
+            return 0;
+        }
+
+        @Override
+        public int dy() {
+            return -1;
         }
 
         @Override
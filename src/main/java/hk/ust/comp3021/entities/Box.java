@@ -6,6 +6,26 @@ import java.util.Objects;
  * Denotes a box.
  */
 public final class Box extends Entity {
+
+    private static final Box[] CACHE = new Box[26];
+
+    static {
+        for (int id = 0; id < CACHE.length; id++) {
+            CACHE[id] = new Box(id);
+        }
+    }
+
+    /**
+     * Get a box of the given player.
+     * Boxes are immutable, so boxes of the same player are shared for all supported player ids.
+     *
+     * @param playerId the id of the player that can move this box.
+     * @return the box.
+     */
+    public static Box of(int playerId) {
+        return playerId >= 0 && playerId < CACHE.length ? CACHE[playerId] : new Box(playerId);
+    }
+
     private final int playerId;
 
     /**
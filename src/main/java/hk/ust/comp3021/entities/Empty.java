@@ -7,6 +7,11 @@ import java.util.Objects;
  */
 public final class Empty extends Entity {
 
+    /**
+     * The shared empty cell. All empty cells are equal, so this instance can be used everywhere.
+     */
+    public static final Empty INSTANCE = new Empty();
+
     @Override
     public boolean equals(Object o) {
         return o instanceof Empty;
@@ -17,6 +17,25 @@ public final class Player extends Entity {
         return (char) ('A' + id);
     }
 
+    private static final Player[] CACHE = new Player[26];
+
+    static {
+        for (int id = 0; id < CACHE.length; id++) {
+            CACHE[id] = new Player(id);
+        }
+    }
+
+    /**
+     * Get the player with the given id.
+     * Players are immutable, so the same instance is shared for all supported player ids.
+     *
+     * @param id id of the player.
+     * @return the player.
+     */
+    public static Player of(int id) {
+        return id >= 0 && id < CACHE.length ? CACHE[id] : new Player(id);
+    }
+
     private final int id;
 
     /**
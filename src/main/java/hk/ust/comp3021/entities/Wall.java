@@ -6,6 +6,12 @@ import java.util.Objects;
  * Denotes a wall.
  */
 public final class Wall extends Entity {
+
+    /**
+     * The shared wall. All walls are equal, so this instance can be used everywhere.
+     */
+    public static final Wall INSTANCE = new Wall();
+
     @Override
     public boolean equals(Object o) {
         return o instanceof Wall;
@@ -0,0 +1,56 @@
+package hk.ust.comp3021.game;
+
+/**
+ * Operations on bitsets stored as {@code long[]} words, where bit {@code i} is bit {@code i % 64} of word {@code i / 64}.
+ * Unlike {@link java.util.BitSet}, such bitsets have a fixed size and can be shared, copied and combined word by word.
+ */
+final class Bits {
+
+    private Bits() {
+    }
+
+    /**
+     * @param size The number of bits.
+     * @return A bitset of the given number of bits, all clear.
+     */
+    static long[] words(int size) {
+        return new long[(size + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    /**
+     * @param bits  The bitset.
+     * @param index The index of the bit.
+     * @return True if the bit is set.
+     */
+    static boolean get(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @param bits  The bitset.
+     * @param index The index of the bit to set.
+     */
+    static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * @param bits  The bitset.
+     * @param index The index of the bit to clear.
+     */
+    static void clear(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    /**
+     * @param bits  A bitset.
+     * @param other Another bitset of the same size.
+     * @return The number of bits set in both bitsets, i.e. the cardinality of {@code bits & other}.
+     */
+    static int intersectionCount(long[] bits, long[] other) {
+        var count = 0;
+        for (int i = 0; i < bits.length; i++)
+            count += Long.bitCount(bits[i] & other[i]);
+        return count;
+    }
+}
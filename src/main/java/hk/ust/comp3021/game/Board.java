@@ -0,0 +1,29 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.entities.Entity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The storage of entities in a {@link GameState}.
+ * Cells are addressed by their index {@code y * width + x}, where width is the maximum width of the game map.
+ */
+interface Board {
+
+    /**
+     * @param cell The index of the cell.
+     * @return The entity in the cell, or null if there is no entity.
+     */
+    @Nullable Entity get(int cell);
+
+    /**
+     * @param cell   The index of the cell.
+     * @param entity The entity to put into the cell.
+     */
+    void put(int cell, @NotNull Entity entity);
+
+    /**
+     * @return A board holding the same entities in the same cells, which is modified independently of this board.
+     */
+    @NotNull Board copy();
+}
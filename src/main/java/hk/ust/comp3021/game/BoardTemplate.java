@@ -0,0 +1,255 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.entities.Entity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * An immutable, compiled form of a {@link GameMap}, from which {@link GameState} instances are created cheaply.
+ * <p>
+ * The initial entities are stored as a flat array of {@link EntityCode entity codes} indexed by {@code y * width + x},
+ * so that a {@link GameState.Backend#GRID} game state is created by copying that array once.
+ * Walls and box destinations, which never change during a game, are stored as bitsets over the same cell indices
+ * and are shared by all game states created from the template.
+ * The initial boxes, the boxes of each player and the players are stored as bitsets that each game state copies.
+ * The player index, the boxes on destinations counter and the Zobrist key of the initial entities are computed once, too.
+ * <p>
+ * Templates are obtained with {@link GameMap#getTemplate()}.
+ */
+public final class BoardTemplate {
+
+    private final int width;
+
+    private final int height;
+
+    private final int[] cells;
+
+    private final long[] walls;
+
+    private final long[] destinationCells;
+
+    private final Set<Position> destinations;
+
+    private final long[] boxes;
+
+    /**
+     * The bitset of boxes of each player, indexed by player id. Null if the player has no boxes.
+     */
+    private final long[][] playerBoxes;
+
+    private final long[] players;
+
+    /**
+     * The cell index of each player, indexed by player id. -1 if the player is not on the board.
+     */
+    private final int[] playerCells;
+
+    private final int boxesOnDestinations;
+
+    private final long zobristKey;
+
+    private final int undoLimit;
+
+    /**
+     * Compile the entities of a game map.
+     * Entities and destinations out of the {@code width * height} area are ignored.
+     *
+     * @param width        Width of the game map.
+     * @param height       Height of the game map.
+     * @param entities     Entities of the game map.
+     * @param destinations Set of box destination positions.
+     * @param undoLimit    Undo limit, or -1 if unlimited.
+     */
+    BoardTemplate(int width, int height, @NotNull Map<Position, Entity> entities, @NotNull Set<Position> destinations,
+                  int undoLimit) {
+        Position.reserve(width, height);
+        this.width = width;
+        this.height = height;
+        this.cells = new int[width * height];
+        this.walls = Bits.words(cells.length);
+        this.destinationCells = Bits.words(cells.length);
+        this.boxes = Bits.words(cells.length);
+        this.players = Bits.words(cells.length);
+        this.destinations = destinations;
+        this.undoLimit = undoLimit;
+
+        for (final var destination : destinations) {
+            final var cell = cellOf(destination);
+            if (cell >= 0)
+                Bits.set(destinationCells, cell);
+        }
+        var boxLayers = new long[0][];
+        var playerIndex = new int[0];
+        var onDestinations = 0;
+        var key = 0L;
+        for (final var entry : entities.entrySet()) {
+            final var cell = cellOf(entry.getKey());
+            if (cell < 0)
+                continue;
+            final var code = EntityCode.encode(entry.getValue());
+            cells[cell] = code;
+            key ^= EntityCode.zobrist(code, cell);
+            switch (EntityCode.kind(code)) {
+                case EntityCode.WALL -> Bits.set(walls, cell);
+                case EntityCode.BOX -> {
+                    final var id = EntityCode.playerId(code);
+                    if (id >= boxLayers.length)
+                        boxLayers = Arrays.copyOf(boxLayers, id + 1);
+                    if (boxLayers[id] == null)
+                        boxLayers[id] = Bits.words(cells.length);
+                    Bits.set(boxLayers[id], cell);
+                    Bits.set(boxes, cell);
+                    if (Bits.get(destinationCells, cell))
+                        onDestinations++;
+                }
+                case EntityCode.PLAYER -> {
+                    final var id = EntityCode.playerId(code);
+                    if (id >= playerIndex.length) {
+                        final var oldLength = playerIndex.length;
+                        playerIndex = Arrays.copyOf(playerIndex, id + 1);
+                        Arrays.fill(playerIndex, oldLength, id + 1, -1);
+                    }
+                    playerIndex[id] = cell;
+                    Bits.set(players, cell);
+                }
+                default -> {
+                }
+            }
+        }
+        this.playerCells = playerIndex;
+        this.playerBoxes = boxLayers;
+        this.boxesOnDestinations = onDestinations;
+        this.zobristKey = key;
+    }
+
+    private int cellOf(@NotNull Position position) {
+        if (position.x() < 0 || position.y() < 0 || position.x() >= width || position.y() >= height)
+            return -1;
+        return position.y() * width + position.x();
+    }
+
+    /**
+     * @return maximum width of the game map.
+     */
+    public int getMaxWidth() {
+        return width;
+    }
+
+    /**
+     * @return maximum height of the game map.
+     */
+    public int getMaxHeight() {
+        return height;
+    }
+
+    /**
+     * @param position a position.
+     * @return true if there is a wall at the position.
+     */
+    public boolean isWall(@NotNull Position position) {
+        final var cell = cellOf(position);
+        return cell >= 0 && Bits.get(walls, cell);
+    }
+
+    /**
+     * @param position a position.
+     * @return true if the position is a box destination.
+     */
+    public boolean isDestination(@NotNull Position position) {
+        final var cell = cellOf(position);
+        return cell >= 0 && Bits.get(destinationCells, cell);
+    }
+
+    /**
+     * @return all box destination positions of the game map.
+     */
+    public @NotNull @Unmodifiable Set<Position> getDestinations() {
+        return destinations;
+    }
+
+    /**
+     * @return the undo limit of the game map, or {@link Optional#empty()} if undo is unlimited.
+     */
+    public Optional<Integer> getUndoLimit() {
+        return undoLimit < 0 ? Optional.empty() : Optional.of(undoLimit);
+    }
+
+    /**
+     * @return a copy of the entity codes of the initial entities, which the caller may modify.
+     */
+    int[] copyCells() {
+        return cells.clone();
+    }
+
+    /**
+     * @param cell the index of a cell.
+     * @return the entity code of the initial entity in the cell.
+     */
+    int cell(int cell) {
+        return cells[cell];
+    }
+
+    /**
+     * @return the bitset of walls, which must not be modified.
+     */
+    long[] walls() {
+        return walls;
+    }
+
+    /**
+     * @return the bitset of box destinations, which must not be modified.
+     */
+    long[] destinationCells() {
+        return destinationCells;
+    }
+
+    /**
+     * @return a copy of the cell index of each player, indexed by player id.
+     */
+    int[] copyPlayerCells() {
+        return playerCells.clone();
+    }
+
+    /**
+     * @return a copy of the bitset of the initial boxes.
+     */
+    long[] copyBoxes() {
+        return boxes.clone();
+    }
+
+    /**
+     * @return a copy of the bitset of the initial boxes of each player, indexed by player id, with null for players without boxes.
+     */
+    long[][] copyPlayerBoxes() {
+        final var copy = new long[playerBoxes.length][];
+        for (int id = 0; id < copy.length; id++) {
+            if (playerBoxes[id] != null)
+                copy[id] = playerBoxes[id].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * @return a copy of the bitset of the initial players.
+     */
+    long[] copyPlayers() {
+        return players.clone();
+    }
+
+    int boxesOnDestinations() {
+        return boxesOnDestinations;
+    }
+
+    long zobristKey() {
+        return zobristKey;
+    }
+
+    int undoLimit() {
+        return undoLimit;
+    }
+}
@@ -0,0 +1,86 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.entities.*;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Compact integer encoding of {@link Entity} objects, used by array-backed boards.
+ * The lowest three bits of a code denote the kind of the entity,
+ * and the remaining bits hold the player id of a {@link Box} or a {@link Player}.
+ * Code {@link #NONE} denotes a position without any entity.
+ */
+final class EntityCode {
+    static final int NONE = 0;
+    static final int EMPTY = 1;
+    static final int WALL = 2;
+    static final int BOX = 3;
+    static final int PLAYER = 4;
+
+    private static final int KIND_BITS = 3;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+
+    private EntityCode() {
+    }
+
+    /**
+     * @param entity The entity to encode, or null if there is no entity.
+     * @return The code of the entity.
+     */
+    static int encode(@Nullable Entity entity) {
+        return switch (entity) {
+            case null -> NONE;
+            case Empty ignored -> EMPTY;
+            case Wall ignored -> WALL;
+            case Box b -> (b.getPlayerId() << KIND_BITS) | BOX;
+            case Player p -> (p.getId() << KIND_BITS) | PLAYER;
+        };
+    }
+
+    /**
+     * @param code The code of an entity.
+     * @return The decoded entity, using the shared instances of entities.
+     */
+    static @Nullable Entity decode(int code) {
+        return switch (code & KIND_MASK) {
+            case EMPTY -> Empty.INSTANCE;
+            case WALL -> Wall.INSTANCE;
+            case BOX -> Box.of(code >> KIND_BITS);
+            case PLAYER -> Player.of(code >> KIND_BITS);
+            default -> null;
+        };
+    }
+
+    /**
+     * The Zobrist key of an entity in a cell.
+     * Instead of a table of random numbers, keys are derived by mixing the code and the cell with the SplitMix64 finalizer,
+     * so that boards of any size need no extra memory and keys agree across game states.
+     *
+     * @param code The code of an entity.
+     * @param cell The index of the cell.
+     * @return The key, which is 0 for cells without an entity or with an {@link Empty} entity.
+     */
+    static long zobrist(int code, int cell) {
+        if (code == NONE || code == EMPTY)
+            return 0;
+        var z = (((long) code << 32) | (cell & 0xffffffffL)) + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @param code The code of an entity.
+     * @return The kind of the entity, i.e. one of {@link #NONE}, {@link #EMPTY}, {@link #WALL}, {@link #BOX} and {@link #PLAYER}.
+     */
+    static int kind(int code) {
+        return code & KIND_MASK;
+    }
+
+    /**
+     * @param code The code of a box or a player.
+     * @return The player id carried by the code.
+     */
+    static int playerId(int code) {
+        return code >> KIND_BITS;
+    }
+}
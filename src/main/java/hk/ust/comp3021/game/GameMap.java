@@ -32,6 +32,10 @@ public class GameMap {
 
     private final int undoLimit;
 
+    /**
+     * The compiled form of this game map, created on demand and discarded by {@link GameMap#putEntity(Position, Entity)}.
+     */
+    private volatile @Nullable BoardTemplate template;
 
     /**
      * Create a new GameMap with width, height, set of box destinations and undo limit.
@@ -58,6 +62,7 @@ public class GameMap {
         this.undoLimit = undoLimit;
         this.maxWidth = map.keySet().stream().mapToInt(Position::x).max().orElse(0) + 1;
         this.maxHeight = map.keySet().stream().mapToInt(Position::y).max().orElse(0) + 1;
+        Position.reserve(maxWidth, maxHeight);
     }
 
     /**
@@ -114,22 +119,22 @@ public class GameMap {
             int y = lineNumber.getAndIncrement();
             for (char c : line.toCharArray()) {
                 if (c == '#') { // walls
-                    map.put(Position.of(x, y), new Wall());
+                    map.put(Position.of(x, y), Wall.INSTANCE);
                 } else if (c == '@') {  // destinations
-                    destinations.add(new Position(x, y));
-                    map.put(Position.of(x, y), new Empty());
+                    destinations.add(Position.of(x, y));
+                    map.put(Position.of(x, y), Empty.INSTANCE);
                 } else if (Character.isLowerCase(c)) { // lower case letters are boxes for each player (corresponding upper case letter)
                     final var playerId = Character.toUpperCase(c) - 'A';
-                    map.put(Position.of(x, y), new Box(playerId));
+                    map.put(Position.of(x, y), Box.of(playerId));
                 } else if (Character.isUpperCase(c)) {
                     final var playerId = c - 'A';
                     if (players.contains(playerId)) {
                         throw new IllegalArgumentException("duplicate players detected in the map");
                     }
                     players.add(playerId);
-                    map.put(new Position(x, y), new Player(playerId));
+                    map.put(Position.of(x, y), Player.of(playerId));
                 } else if (c == '.') {
-                    map.put(Position.of(x, y), new Empty());
+                    map.put(Position.of(x, y), Empty.INSTANCE);
                 }
                 x++;
             }
@@ -180,6 +185,22 @@ public class GameMap {
      */
     public void putEntity(Position position, Entity entity) {
         this.map.put(position, entity);
+        this.template = null;
+    }
+
+    /**
+     * Get the immutable, compiled form of this game map, from which game states are created cheaply.
+     * It is computed on the first call and shared until this game map is modified.
+     *
+     * @return the board template.
+     */
+    public @NotNull BoardTemplate getTemplate() {
+        var compiled = this.template;
+        if (compiled == null) {
+            compiled = new BoardTemplate(maxWidth, maxHeight, map, destinations, undoLimit);
+            this.template = compiled;
+        }
+        return compiled;
     }
 
     /**
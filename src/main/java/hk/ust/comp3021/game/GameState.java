@@ -9,7 +9,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Unmodifiable;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.LongConsumer;
 
 /**
  * The state of the Sokoban Game.
@@ -25,9 +25,29 @@ import java.util.stream.Collectors;
  */
 public class GameState {
 
-    private final Stack<Transition> history = new Stack<>();
+    /**
+     * The data structure storing the entities of a running game.
+     */
+    public enum Backend {
+        /**
+         * Entities are stored in a flat array indexed by {@code y * width + x}.
+         */
+        GRID,
+
+        /**
+         * Entities are stored in a hash map keyed by {@link Position}.
+         */
+        MAP,
+    }
+
+    private final UndoHistory history;
+
+    private final Board board;
 
-    private final Map<Position, Entity> entities;
+    /**
+     * The cell index of each player, indexed by player id. -1 if the player is not on the board.
+     */
+    private int[] playerCells;
 
     private final int boardWidth;
 
@@ -35,9 +55,59 @@ public class GameState {
 
     private final Set<Position> destinations;
 
+    /**
+     * The bitset of wall cells, shared with the {@link BoardTemplate} and never modified.
+     */
+    private final long[] wallCells;
+
+    /**
+     * The bitset of box destination cells, shared with the {@link BoardTemplate} and never modified.
+     */
+    private final long[] destinationCells;
+
+    /**
+     * The bitset of cells holding boxes of any player.
+     */
+    private final long[] boxCells;
+
+    /**
+     * The bitset of cells holding boxes of each player, indexed by player id. Null if the player has had no boxes.
+     */
+    private long[][] playerBoxCells;
+
+    /**
+     * The bitset of cells holding players.
+     */
+    private final long[] playerCellBits;
+
+    /**
+     * The number of box destinations currently occupied by boxes.
+     */
+    private int boxesOnDestinations;
+
+    /**
+     * The Zobrist hash of all entities on the board.
+     */
+    private long zobristKey;
+
     private int undoQuota;
 
-    private Transition currentTransition = new Transition();
+    /**
+     * The cells whose entities changed since the last {@link GameState#drainDirtyCells(LongConsumer)}, in order of change.
+     */
+    private int[] dirtyCells = new int[16];
+
+    private int dirtyCount = 0;
+
+    /**
+     * The cells in {@link #dirtyCells}, so that each cell is recorded once.
+     */
+    private final BitSet dirtyCellSet = new BitSet();
+
+    /**
+     * Reusable buffer of entities being moved by {@link GameState#revert(int)}.
+     */
+    private Entity[] revertBuffer = new Entity[0];
 
     /**
      * Create a running game state from a game map.
@@ -45,20 +115,110 @@ public class GameState {
      * @param map the game map from which to create this game state.
      */
     public GameState(@NotNull GameMap map) {
-        this.entities = new HashMap<>();
-        this.boardWidth = map.getMaxWidth();
-        this.boardHeight = map.getMaxHeight();
-
-        for (int x = 0; x < boardWidth; x++) {
-            for (int y = 0; y < boardHeight; y++) {
-                final var pos = Position.of(x, y);
-                final var entity = map.getEntity(pos);
-                if (entity != null)
-                    this.entities.put(pos, entity);
+        this(map, Backend.GRID);
+    }
+
+    /**
+     * Create a running game state from a game map, storing entities in the given backend.
+     *
+     * @param map     the game map from which to create this game state.
+     * @param backend the data structure to store entities in.
+     */
+    public GameState(@NotNull GameMap map, @NotNull Backend backend) {
+        this(map.getTemplate(), backend);
+    }
+
+    /**
+     * Create a running game state from a board template.
+     *
+     * @param template the board template from which to create this game state.
+     */
+    public GameState(@NotNull BoardTemplate template) {
+        this(template, Backend.GRID);
+    }
+
+    /**
+     * Create a running game state from a board template, storing entities in the given backend.
+     * With {@link Backend#GRID}, the entities are copied from the template with a single array copy.
+     *
+     * @param template the board template from which to create this game state.
+     * @param backend  the data structure to store entities in.
+     */
+    public GameState(@NotNull BoardTemplate template, @NotNull Backend backend) {
+        this.boardWidth = template.getMaxWidth();
+        this.boardHeight = template.getMaxHeight();
+        this.board = switch (backend) {
+            case GRID -> new GridBoard(template.copyCells());
+            case MAP -> {
+                final var mapBoard = new MapBoard(boardWidth);
+                for (int cell = 0; cell < boardWidth * boardHeight; cell++) {
+                    final var entity = EntityCode.decode(template.cell(cell));
+                    if (entity != null)
+                        mapBoard.put(cell, entity);
+                }
+                yield mapBoard;
             }
+        };
+        this.destinations = template.getDestinations();
+        this.wallCells = template.walls();
+        this.destinationCells = template.destinationCells();
+        this.boxCells = template.copyBoxes();
+        this.playerBoxCells = template.copyPlayerBoxes();
+        this.playerCellBits = template.copyPlayers();
+        this.playerCells = template.copyPlayerCells();
+        this.boxesOnDestinations = template.boxesOnDestinations();
+        this.zobristKey = template.zobristKey();
+        this.undoQuota = template.undoLimit();
+        this.history = new UndoHistory(undoQuota);
+    }
+
+    /**
+     * Create a copy of another game state.
+     *
+     * @param other       the game state to copy.
+     * @param withHistory whether to copy the undo history, or start with an empty one.
+     */
+    private GameState(@NotNull GameState other, boolean withHistory) {
+        this.history = withHistory ? other.history.copy() : other.history.emptyCopy();
+        this.board = other.board.copy();
+        this.playerCells = other.playerCells.clone();
+        this.boardWidth = other.boardWidth;
+        this.boardHeight = other.boardHeight;
+        this.destinations = other.destinations;
+        this.wallCells = other.wallCells;
+        this.destinationCells = other.destinationCells;
+        this.boxCells = other.boxCells.clone();
+        this.playerBoxCells = new long[other.playerBoxCells.length][];
+        for (int id = 0; id < playerBoxCells.length; id++) {
+            if (other.playerBoxCells[id] != null)
+                this.playerBoxCells[id] = other.playerBoxCells[id].clone();
         }
-        this.destinations = map.getDestinations();
-        undoQuota = map.getUndoLimit().orElse(-1);
+        this.playerCellBits = other.playerCellBits.clone();
+        this.boxesOnDestinations = other.boxesOnDestinations;
+        this.zobristKey = other.zobristKey;
+        this.undoQuota = other.undoQuota;
+    }
+
+    /**
+     * Create a copy of this game state, including the undo history, which changes independently of this game state.
+     * The copy has no dirty cells (see {@link GameState#drainDirtyCells(LongConsumer)}).
+     *
+     * @return the copy.
+     */
+    public @NotNull GameState copy() {
+        return new GameState(this, true);
+    }
+
+    /**
+     * Create a copy of this game state for reading, e.g. rendering, with the same entities and undo quota
+     * but an empty undo history, so undoing on it has no effect.
+     * Unlike {@link GameState#copy()}, the time taken does not grow with the number of moves made.
+     * The snapshot has no dirty cells (see {@link GameState#drainDirtyCells(LongConsumer)}).
+     *
+     * @return the snapshot.
+     */
+    public @NotNull GameState snapshot() {
+        return new GameState(this, false);
     }
 
     /**
@@ -67,10 +227,12 @@ public class GameState {
      * @return The set of all the players.
      */
     public @NotNull Set<Player> getAllPlayers() {
-        return this.entities.values().stream()
-                .filter(entity -> entity instanceof Player)
-                .map(entity -> (Player) entity)
-                .collect(Collectors.toSet());
+        final var players = new HashSet<Player>();
+        for (int id = 0; id < playerCells.length; id++) {
+            if (playerCells[id] >= 0)
+                players.add((Player) this.board.get(playerCells[id]));
+        }
+        return players;
     }
 
     /**
@@ -80,10 +242,9 @@ public class GameState {
      * @return the current position of the player.
      */
     public @Nullable Position getPlayerPositionById(int id) {
-        return this.entities.entrySet().stream()
-                .filter(e -> e.getValue() instanceof Player p && p.getId() == id)
-                .map(Map.Entry::getKey)
-                .findFirst().orElse(null);
+        if (id < 0 || id >= playerCells.length || playerCells[id] < 0)
+            return null;
+        return positionOf(playerCells[id]);
     }
 
     /**
@@ -92,10 +253,12 @@ public class GameState {
      * @return a set of positions of all players.
      */
     public @NotNull Set<Position> getAllPlayerPositions() {
-        return this.entities.entrySet().stream()
-                .filter(e -> e.getValue() instanceof Player)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toSet());
+        final var positions = new HashSet<Position>();
+        for (final var cell : playerCells) {
+            if (cell >= 0)
+                positions.add(positionOf(cell));
+        }
+        return positions;
     }
 
     /**
@@ -105,7 +268,19 @@ public class GameState {
      * @return the entity object.
      */
     public @Nullable Entity getEntity(@NotNull Position position) {
-        return this.entities.get(position);
+        final var cell = cellOf(position);
+        return cell < 0 ? null : this.board.get(cell);
+    }
+
+    /**
+     * Get the entity that is currently at the given position, without creating any objects.
+     *
+     * @param position the position of the entity, packed by {@link Position#pack(int, int)}.
+     * @return the entity object.
+     */
+    public @Nullable Entity getEntity(long position) {
+        final var cell = cellOf(Position.x(position), Position.y(position));
+        return cell < 0 ? null : this.board.get(cell);
     }
 
     /**
@@ -118,6 +293,57 @@ public class GameState {
         return destinations;
     }
 
+    /**
+     * Get the bitset of walls, in which bit {@code y * width + x} is set if there is a wall at {@code (x, y)},
+     * where width is {@link GameState#getMapMaxWidth()}.
+     * Bit {@code i} is bit {@code i % 64} of word {@code i / 64}, as in {@link BitSet#valueOf(long[])}.
+     * Walls never move, so the bitset is the same as that of the {@link BoardTemplate}.
+     *
+     * @return a copy of the bitset.
+     */
+    public long @NotNull [] getWallBits() {
+        return wallCells.clone();
+    }
+
+    /**
+     * Get the bitset of box destinations, laid out as in {@link GameState#getWallBits()}.
+     *
+     * @return a copy of the bitset.
+     */
+    public long @NotNull [] getDestinationBits() {
+        return destinationCells.clone();
+    }
+
+    /**
+     * Get the bitset of boxes of all players, laid out as in {@link GameState#getWallBits()}.
+     *
+     * @return a copy of the bitset.
+     */
+    public long @NotNull [] getBoxBits() {
+        return boxCells.clone();
+    }
+
+    /**
+     * Get the bitset of boxes of a player, laid out as in {@link GameState#getWallBits()}.
+     *
+     * @param playerId the id of the player.
+     * @return a copy of the bitset, which is empty if the player has no boxes.
+     */
+    public long @NotNull [] getBoxBits(int playerId) {
+        if (playerId < 0 || playerId >= playerBoxCells.length || playerBoxCells[playerId] == null)
+            return Bits.words(boardWidth * boardHeight);
+        return playerBoxCells[playerId].clone();
+    }
+
+    /**
+     * Get the bitset of players, laid out as in {@link GameState#getWallBits()}.
+     *
+     * @return a copy of the bitset.
+     */
+    public long @NotNull [] getPlayerBits() {
+        return playerCellBits.clone();
+    }
+
     /**
      * Get the undo quota currently left, i.e., the maximum number of undo actions that can be performed from now on.
      * If undo is unlimited,
@@ -136,11 +362,35 @@ public class GameState {
     /**
      * Check whether the game wins or not.
      * The game wins only when all box destinations have been occupied by boxes.
+     * <p>
+     * The check compares a counter maintained by {@link GameState#move(Position, Position)} and {@link GameState#undo()}.
+     * When assertions are enabled ({@code -ea}), the counter is cross-checked against the boxes found on the board
+     * in the destination cells, and against the bitsets of boxes and destinations.
      *
      * @return true is the game wins.
      */
     public boolean isWin() {
-        return this.destinations.stream().allMatch(p -> this.entities.get(p) instanceof Box);
+        assert boxesOnDestinations == scanBoxesOnDestinations() : "boxes on destinations counter is out of sync";
+        assert boxesOnDestinations == Bits.intersectionCount(boxCells, destinationCells)
+                : "bitset of boxes is out of sync";
+        return boxesOnDestinations == this.destinations.size();
+    }
+
+    /**
+     * Count the boxes on destinations by looking up every destination cell on the board,
+     * independently of the counter and the bitset of boxes maintained by {@link #put(int, Entity)}.
+     *
+     * @return the number of boxes on destinations.
+     */
+    private int scanBoxesOnDestinations() {
+        var count = 0;
+        for (int w = 0; w < destinationCells.length; w++) {
+            for (var word = destinationCells[w]; word != 0; word &= word - 1) {
+                if (this.board.get(w * Long.SIZE + Long.numberOfTrailingZeros(word)) instanceof Box)
+                    count++;
+            }
+        }
+        return count;
     }
 
     /**
@@ -153,12 +403,15 @@ public class GameState {
      */
     public void move(@NotNull Position from, @NotNull Position to) {
         // move entity
-        final var entity = this.entities.remove(from);
-        this.entities.put(from, new Empty());
-        this.entities.put(to, entity);
+        final var fromCell = cellOf(from);
+        final var toCell = cellOf(to);
+        final var entity = this.board.get(fromCell);
+        this.put(fromCell, Empty.INSTANCE);
+        if (entity != null)
+            this.put(toCell, entity);
 
         // append to history
-        this.currentTransition.add(from, to);
+        this.history.add(fromCell, toCell);
     }
 
     /**
@@ -170,26 +423,31 @@ public class GameState {
      * Every undo actions reverts the game state to the last checkpoint.
      */
     public void checkpoint() {
-        this.history.push(this.currentTransition);
-        this.currentTransition = new Transition();
+        this.history.checkpoint();
     }
 
     /**
-     * Apply transition on current entity map.
+     * Revert the newest records in history on current entity map.
      * History is not touched in this method.
      * Callers should maintain history themselves.
      *
-     * @param transition the transition to apply.
+     * @param count the number of records to revert, counted from the newest one.
      */
-    private void applyTransition(Transition transition) {
-        transition.moves.entrySet().stream()
-                .map(e -> {
-                    final var entity = this.entities.remove(e.getKey());
-                    this.entities.put(e.getKey(), new Empty());
-                    return Map.entry(e.getValue(), entity);
-                })
-                .toList()
-                .forEach(e -> this.entities.put(e.getKey(), e.getValue()));
+    private void revert(int count) {
+        if (this.revertBuffer.length < count)
+            this.revertBuffer = new Entity[Math.max(count, 2 * this.revertBuffer.length)];
+        // Records are net moves of distinct entities, so lift all of them before putting them back.
+        for (int k = 0; k < count; k++) {
+            final var cell = this.history.to(k);
+            this.revertBuffer[k] = this.board.get(cell);
+            this.put(cell, Empty.INSTANCE);
+        }
+        for (int k = 0; k < count; k++) {
+            final var entity = this.revertBuffer[k];
+            if (entity != null)
+                this.put(this.history.from(k), entity);
+            this.revertBuffer[k] = null;
+        }
     }
 
     /**
@@ -200,16 +458,51 @@ public class GameState {
      * revert to the initial game state.
      */
     public void undo() {
-        final var undoTransition = this.currentTransition.reverse();
-        this.currentTransition = new Transition();
-        this.applyTransition(undoTransition);
-        if (!this.history.empty()) {
-            final var historyTransaction = this.history.pop().reverse();
-            this.applyTransition(historyTransaction);
+        this.revert(this.history.openLength());
+        this.history.discardOpen();
+        if (this.history.hasCheckpoint()) {
+            this.revert(this.history.lastSegmentLength());
+            this.history.discardLastSegment();
             this.undoQuota--;
         }
     }
 
+    /**
+     * Get the Zobrist hash of the entities on the board.
+     * The key is maintained incrementally by {@link GameState#move(Position, Position)} and {@link GameState#undo()},
+     * and game states with the same entities at the same positions always have the same key.
+     *
+     * @return the 64-bit Zobrist key.
+     */
+    public long zobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * Pass the position of every cell whose entity has changed since the last call to the consumer, and forget them.
+     * Cells changed by {@link GameState#move(Position, Position)} and {@link GameState#undo()} are recorded once each,
+     * in the order of their first change, even if they have changed back since.
+     * <p>
+     * This lets an observer, such as a {@link RenderingEngine}, update its view in time proportional to the changes
+     * instead of scanning the whole board, after it has seen the whole board once.
+     * Cells are recorded for a single observer: each change is passed to only one call.
+     *
+     * @param consumer the consumer of positions, packed by {@link Position#pack(int, int)}.
+     */
+    public void drainDirtyCells(@NotNull LongConsumer consumer) {
+        for (int i = 0; i < dirtyCount; i++) {
+            final var cell = dirtyCells[i];
+            consumer.accept(Position.pack(cell % boardWidth, cell / boardWidth));
+        }
+        clearDirtyCells();
+    }
+
+    private void clearDirtyCells() {
+        for (int i = 0; i < dirtyCount; i++)
+            dirtyCellSet.clear(dirtyCells[i]);
+        dirtyCount = 0;
+    }
+
     /**
      * Get the maximum width of the game map.
      * This should be the same as that in {@link GameMap} class.
@@ -230,52 +523,124 @@ public class GameState {
         return boardHeight;
     }
 
-    private static class Transition {
-        private final Map<Position, Position> moves;
-
-        private void add(Position from, Position to) {
-            final var key = this.moves.entrySet().stream()
-                    .filter(e -> e.getValue().equals(from))
-                    .map(Map.Entry::getKey)
-                    .findFirst().orElse(from);
-            this.moves.put(key, to);
+    /**
+     * Put an entity into a cell, keeping the player index, the bitsets of boxes and players,
+     * the boxes on destinations counter, the Zobrist key and the dirty cells in sync.
+     * All modifications to the board should go through this method.
+     *
+     * @param cell   the index of the cell.
+     * @param entity the entity to put.
+     */
+    private void put(int cell, @NotNull Entity entity) {
+        final var previous = this.board.get(cell);
+        if (previous instanceof Player player) {
+            final var id = player.getId();
+            if (id >= 0 && id < playerCells.length && playerCells[id] == cell)
+                playerCells[id] = -1;
+            Bits.clear(playerCellBits, cell);
+        } else if (previous instanceof Box box) {
+            Bits.clear(boxCells, cell);
+            final var id = box.getPlayerId();
+            if (id >= 0 && id < playerBoxCells.length && playerBoxCells[id] != null)
+                Bits.clear(playerBoxCells[id], cell);
         }
-
-        private Transition(Map<Position, Position> moves) {
-            this.moves = moves;
+        if (Bits.get(destinationCells, cell)) {
+            if (previous instanceof Box)
+                boxesOnDestinations--;
+            if (entity instanceof Box)
+                boxesOnDestinations++;
         }
-
-        private Transition() {
-            this.moves = new HashMap<>();
+        zobristKey ^= EntityCode.zobrist(EntityCode.encode(previous), cell) ^ EntityCode.zobrist(EntityCode.encode(entity), cell);
+        this.board.put(cell, entity);
+        if (previous != entity && !dirtyCellSet.get(cell)) {
+            dirtyCellSet.set(cell);
+            if (dirtyCount == dirtyCells.length)
+                dirtyCells = Arrays.copyOf(dirtyCells, 2 * dirtyCount);
+            dirtyCells[dirtyCount++] = cell;
         }
-
-        private Transition reverse() {
-            final var moves = this.moves.entrySet().stream().collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey));
-            return new Transition(moves);
+        if (entity instanceof Player player && player.getId() >= 0) {
+            final var id = player.getId();
+            if (id >= playerCells.length) {
+                final var oldLength = playerCells.length;
+                playerCells = Arrays.copyOf(playerCells, id + 1);
+                Arrays.fill(playerCells, oldLength, id + 1, -1);
+            }
+            playerCells[id] = cell;
         }
-
-        @Override
-        public String toString() {
-            final var moves = this.moves.entrySet().stream()
-                    .map(e -> String.format("(%d,%d)->(%d,%d)", e.getKey().x(), e.getKey().y(), e.getValue().x(), e.getValue().y()))
-                    .toList();
-            return String.join(",", moves);
+        if (entity instanceof Player) {
+            Bits.set(playerCellBits, cell);
+        } else if (entity instanceof Box box) {
+            Bits.set(boxCells, cell);
+            final var id = box.getPlayerId();
+            if (id >= 0) {
+                if (id >= playerBoxCells.length)
+                    playerBoxCells = Arrays.copyOf(playerBoxCells, id + 1);
+                if (playerBoxCells[id] == null)
+                    playerBoxCells[id] = Bits.words(boardWidth * boardHeight);
+                Bits.set(playerBoxCells[id], cell);
+            }
         }
     }
 
+    /**
+     * @param position a position in the game map.
+     * @return the index of the cell at the position, or -1 if the position is out of the game map.
+     */
+    private int cellOf(@NotNull Position position) {
+        return cellOf(position.x(), position.y());
+    }
+
+    /**
+     * @param x the horizontal displacement of a position.
+     * @param y the vertical displacement of a position.
+     * @return the index of the cell at the position, or -1 if the position is out of the game map.
+     */
+    private int cellOf(int x, int y) {
+        if (x < 0 || y < 0 || x >= boardWidth || y >= boardHeight)
+            return -1;
+        return y * boardWidth + x;
+    }
+
+    /**
+     * @param cell the index of a cell.
+     * @return the position of the cell.
+     */
+    private @NotNull Position positionOf(int cell) {
+        return Position.of(cell % boardWidth, cell / boardWidth);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof GameState gameState)) return false;
+        if (zobristKey != gameState.zobristKey) return false;
         return boardWidth == gameState.boardWidth &&
                 boardHeight == gameState.boardHeight &&
                 undoQuota == gameState.undoQuota &&
-                entities.equals(gameState.entities) &&
-                destinations.equals(gameState.destinations);
+                destinations.equals(gameState.destinations) &&
+                boardEquals(gameState);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(entities, boardWidth, boardHeight, destinations, undoQuota);
+        // Destinations are left out: they never change, and states of the same map share them.
+        var result = Long.hashCode(zobristKey);
+        result = 31 * result + boardWidth;
+        result = 31 * result + boardHeight;
+        return 31 * result + undoQuota;
+    }
+
+    /**
+     * @param other another game state of the same size.
+     * @return true if both game states have the same entities at the same positions.
+     */
+    private boolean boardEquals(@NotNull GameState other) {
+        if (this.board instanceof GridBoard grid && other.board instanceof GridBoard otherGrid)
+            return grid.contentEquals(otherGrid);
+        for (int cell = 0; cell < boardWidth * boardHeight; cell++) {
+            if (!Objects.equals(this.board.get(cell), other.board.get(cell)))
+                return false;
+        }
+        return true;
     }
 }
@@ -0,0 +1,52 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.entities.Entity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Board} backed by a flat array of {@link EntityCode entity codes}.
+ */
+final class GridBoard implements Board {
+
+    private final int[] cells;
+
+    /**
+     * @param size The number of cells in the board.
+     */
+    GridBoard(int size) {
+        this(new int[size]);
+    }
+
+    /**
+     * @param cells The entity codes of the cells, which the board takes ownership of.
+     */
+    GridBoard(int[] cells) {
+        this.cells = cells;
+    }
+
+    @Override
+    public @Nullable Entity get(int cell) {
+        return EntityCode.decode(this.cells[cell]);
+    }
+
+    @Override
+    public void put(int cell, @NotNull Entity entity) {
+        this.cells[cell] = EntityCode.encode(entity);
+    }
+
+    @Override
+    public @NotNull GridBoard copy() {
+        return new GridBoard(this.cells.clone());
+    }
+
+    /**
+     * @param other Another grid board.
+     * @return True if both boards hold the same entities in the same cells.
+     */
+    boolean contentEquals(@NotNull GridBoard other) {
+        return Arrays.equals(this.cells, other.cells);
+    }
+}
@@ -1,6 +1,7 @@
 package hk.ust.comp3021.game;
 
 import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.actions.Exit;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -17,4 +18,27 @@ public interface InputEngine {
      */
     @NotNull
     Action fetchAction();
+
+    /**
+     * Fetches unprocessed actions into a buffer, in the order they are performed.
+     * <p>
+     * At least one action is fetched.
+     * Fetching stops when the buffer is full, or right after an {@link Exit} action,
+     * so that no action after it is consumed.
+     * The default implementation calls {@link #fetchAction()} repeatedly, and thus blocks until the buffer is full
+     * or an {@link Exit} action is fetched.
+     *
+     * @param buffer The buffer to fill from index 0, which must not be empty.
+     * @return The number of actions fetched.
+     */
+    default int fetchActions(@NotNull Action[] buffer) {
+        var count = 0;
+        while (count < buffer.length) {
+            final var action = fetchAction();
+            buffer[count++] = action;
+            if (action instanceof Exit)
+                break;
+        }
+        return count;
+    }
 }
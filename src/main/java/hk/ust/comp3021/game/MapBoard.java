@@ -0,0 +1,45 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.entities.Entity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link Board} backed by a {@link HashMap} from positions to entities.
+ */
+final class MapBoard implements Board {
+
+    private final Map<Position, Entity> entities;
+
+    private final int width;
+
+    /**
+     * @param width The maximum width of the game map, used to convert cell indices to positions.
+     */
+    MapBoard(int width) {
+        this(width, new HashMap<>());
+    }
+
+    private MapBoard(int width, @NotNull Map<Position, Entity> entities) {
+        this.width = width;
+        this.entities = entities;
+    }
+
+    @Override
+    public @Nullable Entity get(int cell) {
+        return this.entities.get(Position.of(cell % width, cell / width));
+    }
+
+    @Override
+    public void put(int cell, @NotNull Entity entity) {
+        this.entities.put(Position.of(cell % width, cell / width), entity);
+    }
+
+    @Override
+    public @NotNull MapBoard copy() {
+        return new MapBoard(width, new HashMap<>(this.entities));
+    }
+}
@@ -6,20 +6,124 @@ import org.jetbrains.annotations.NotNull;
  * Denotes a position on a game map.
  * The original point is at top-left corner.
  * The coordinates start from 0;
+ * <p>
+ * Positions inside the largest game map seen so far are interned by {@link Position#of(int, int)}.
+ * Hot paths that should not create any objects can instead use the packed representation,
+ * which stores a position in a {@code long} (see {@link Position#pack(int, int)}).
  *
  * @param x The horizontal displacement.
  * @param y The vertical displacement.
  */
 public record Position(int x, int y) {
 
+    /**
+     * The maximum number of positions to intern.
+     */
+    private static final int CACHE_LIMIT = 1 << 22;
+
+    private static volatile Cache cache = new Cache(0, 0);
+
+    /**
+     * Interned positions of a rectangular area, filled lazily.
+     */
+    private record Cache(int width, int height, Position[] positions) {
+        private Cache(int width, int height) {
+            this(width, height, new Position[width * height]);
+        }
+    }
+
     /**
      * Creates a new position.
+     * Positions inside the area reserved by {@link Position#reserve(int, int)} are interned.
      *
      * @param x The horizontal displacement.
      * @param y The vertical displacement.
      * @return The newly created position.
      */
     public static @NotNull Position of(int x, int y) {
-        return new Position(x, y);
+        final var c = cache;
+        if (x < 0 || y < 0 || x >= c.width || y >= c.height)
+            return new Position(x, y);
+        final var index = y * c.width + x;
+        var position = c.positions[index];
+        if (position == null) {
+            // Racing threads may create equal positions, which is harmless.
+            position = new Position(x, y);
+            c.positions[index] = position;
+        }
+        return position;
+    }
+
+    /**
+     * Creates a position from its packed representation.
+     *
+     * @param packed The packed position.
+     * @return The position.
+     */
+    public static @NotNull Position of(long packed) {
+        return of(x(packed), y(packed));
+    }
+
+    /**
+     * Reserves interned positions for a game map of the given size.
+     * Game maps larger than the interning limit are ignored.
+     *
+     * @param width  The width of the game map.
+     * @param height The height of the game map.
+     */
+    public static synchronized void reserve(int width, int height) {
+        final var old = cache;
+        final var newWidth = Math.max(width, old.width);
+        final var newHeight = Math.max(height, old.height);
+        if ((newWidth == old.width && newHeight == old.height) || (long) newWidth * newHeight > CACHE_LIMIT)
+            return;
+        final var grown = new Cache(newWidth, newHeight);
+        for (int y = 0; y < old.height; y++)
+            System.arraycopy(old.positions, y * old.width, grown.positions, y * newWidth, old.width);
+        cache = grown;
+    }
+
+    /**
+     * Packs a position into a {@code long}, with y in the upper 32 bits and x in the lower 32 bits.
+     *
+     * @param x The horizontal displacement.
+     * @param y The vertical displacement.
+     * @return The packed position.
+     */
+    public static long pack(int x, int y) {
+        return ((long) y << 32) | (x & 0xffffffffL);
+    }
+
+    /**
+     * @param packed The packed position.
+     * @return The horizontal displacement of the packed position.
+     */
+    public static int x(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * @param packed The packed position.
+     * @return The vertical displacement of the packed position.
+     */
+    public static int y(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * @param packed The packed position.
+     * @param dx     The horizontal offset.
+     * @param dy     The vertical offset.
+     * @return The packed position displaced by the offsets.
+     */
+    public static long neighbor(long packed, int dx, int dy) {
+        return pack(x(packed) + dx, y(packed) + dy);
+    }
+
+    /**
+     * @return The packed representation of this position.
+     */
+    public long pack() {
+        return pack(x, y);
     }
 }
@@ -0,0 +1,219 @@
+package hk.ust.comp3021.game;
+
+import java.util.Arrays;
+
+/**
+ * The move history of a {@link GameState}.
+ * <p>
+ * Every record is a pair of cell indices, meaning that an entity has moved from the first cell to the second cell.
+ * Records made since the last checkpoint form the open segment, and each checkpoint closes the open segment.
+ * Successive moves of the same entity within the open segment are chained into one record,
+ * so each segment holds at most one record per moved entity.
+ * <p>
+ * Records and segment lengths are kept in ring buffers of primitive ints.
+ * When the undo limit is bounded, only the newest segments within the limit are kept,
+ * since older ones can never be undone.
+ */
+final class UndoHistory {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Maximum number of closed segments to keep, or -1 if unlimited.
+     */
+    private final int segmentLimit;
+
+    /**
+     * Ring buffer of records. Record {@code i} occupies {@code records[2 * (i & mask)]} and the int after it.
+     */
+    private int[] records = new int[2 * INITIAL_CAPACITY];
+
+    /**
+     * Counter of the oldest record kept.
+     */
+    private int firstRecord = 0;
+
+    /**
+     * Counter of the next record to write.
+     */
+    private int endRecord = 0;
+
+    /**
+     * Number of records in the open segment, which are the newest records.
+     */
+    private int openLength = 0;
+
+    /**
+     * Ring buffer of lengths of closed segments.
+     */
+    private int[] segmentLengths = new int[INITIAL_CAPACITY];
+
+    /**
+     * Counter of the oldest segment kept.
+     */
+    private int firstSegment = 0;
+
+    /**
+     * Counter of the next segment to close.
+     */
+    private int endSegment = 0;
+
+    /**
+     * @param undoLimit The undo limit of the game. -1 means unlimited.
+     */
+    UndoHistory(int undoLimit) {
+        this.segmentLimit = undoLimit;
+    }
+
+    /**
+     * @return An empty history with the same undo limit.
+     */
+    UndoHistory emptyCopy() {
+        return new UndoHistory(segmentLimit);
+    }
+
+    /**
+     * @return A history with the same records and segments, which is modified independently of this history.
+     */
+    UndoHistory copy() {
+        final var copy = new UndoHistory(segmentLimit);
+        copy.records = records.clone();
+        copy.firstRecord = firstRecord;
+        copy.endRecord = endRecord;
+        copy.openLength = openLength;
+        copy.segmentLengths = segmentLengths.clone();
+        copy.firstSegment = firstSegment;
+        copy.endSegment = endSegment;
+        return copy;
+    }
+
+    /**
+     * Record a move in the open segment.
+     *
+     * @param from The cell the entity moved from.
+     * @param to   The cell the entity moved to.
+     */
+    void add(int from, int to) {
+        for (int k = 0; k < openLength; k++) {
+            final var slot = slotOf(endRecord - 1 - k);
+            if (records[slot + 1] == from) {
+                records[slot + 1] = to;
+                return;
+            }
+        }
+        if (endRecord - firstRecord == records.length / 2)
+            records = grow(records, firstRecord, endRecord - firstRecord, 2);
+        final var slot = slotOf(endRecord);
+        records[slot] = from;
+        records[slot + 1] = to;
+        endRecord++;
+        openLength++;
+    }
+
+    /**
+     * Close the open segment.
+     */
+    void checkpoint() {
+        if (segmentLimit == 0) {
+            discardOpen();
+            firstRecord = endRecord;
+            return;
+        }
+        if (endSegment - firstSegment == segmentLengths.length)
+            segmentLengths = grow(segmentLengths, firstSegment, endSegment - firstSegment, 1);
+        segmentLengths[endSegment & (segmentLengths.length - 1)] = openLength;
+        endSegment++;
+        openLength = 0;
+        if (segmentLimit > 0 && endSegment - firstSegment > segmentLimit) {
+            firstRecord += segmentLengths[firstSegment & (segmentLengths.length - 1)];
+            firstSegment++;
+        }
+    }
+
+    /**
+     * @return The number of records in the open segment.
+     */
+    int openLength() {
+        return openLength;
+    }
+
+    /**
+     * Drop all records in the open segment.
+     */
+    void discardOpen() {
+        endRecord -= openLength;
+        openLength = 0;
+    }
+
+    /**
+     * @return True if there is a closed segment.
+     */
+    boolean hasCheckpoint() {
+        return endSegment != firstSegment;
+    }
+
+    /**
+     * @return The number of records in the newest closed segment.
+     * This method assumes that the open segment is empty and there is a closed segment.
+     */
+    int lastSegmentLength() {
+        return segmentLengths[(endSegment - 1) & (segmentLengths.length - 1)];
+    }
+
+    /**
+     * Drop the newest closed segment and all its records.
+     * This method assumes that the open segment is empty and there is a closed segment.
+     */
+    void discardLastSegment() {
+        endRecord -= lastSegmentLength();
+        endSegment--;
+    }
+
+    /**
+     * @param k Index of the record counted from the newest one, starting from 0.
+     * @return The cell the entity moved from.
+     */
+    int from(int k) {
+        return records[slotOf(endRecord - 1 - k)];
+    }
+
+    /**
+     * @param k Index of the record counted from the newest one, starting from 0.
+     * @return The cell the entity moved to.
+     */
+    int to(int k) {
+        return records[slotOf(endRecord - 1 - k) + 1];
+    }
+
+    private int slotOf(int record) {
+        return 2 * (record & (records.length / 2 - 1));
+    }
+
+    /**
+     * Double the capacity of a ring buffer, keeping the counters of its elements.
+     *
+     * @param ring      The ring buffer, whose capacity is a power of two.
+     * @param first     The counter of the first element.
+     * @param count     The number of elements.
+     * @param slotWidth The number of ints in one element.
+     * @return The grown ring buffer.
+     */
+    private static int[] grow(int[] ring, int first, int count, int slotWidth) {
+        final var capacity = ring.length / slotWidth;
+        final var grown = new int[ring.length * 2];
+        for (int i = first; i != first + count; i++) {
+            final var from = (i & (capacity - 1)) * slotWidth;
+            final var to = (i & (capacity * 2 - 1)) * slotWidth;
+            System.arraycopy(ring, from, grown, to, slotWidth);
+        }
+        return grown;
+    }
+
+    @Override
+    public String toString() {
+        final var moves = new String[endRecord - firstRecord];
+        for (int k = 0; k < moves.length; k++)
+            moves[moves.length - 1 - k] = from(k) + "->" + to(k);
+        return Arrays.toString(moves);
+    }
+}
@@ -0,0 +1,241 @@
+package hk.ust.comp3021.replay;
+
+import hk.ust.comp3021.actions.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Decoding of the bytes of action files, shared by byte-level input engines.
+ * <p>
+ * The first line of an action file is the player id, and the first character of every following line denotes an action
+ * (see {@link StreamInputEngine#char2Action(int, char)}).
+ * Lines whose first character is not an action, including empty lines, are skipped.
+ * Engines supply the bytes through a {@link ByteSource} and decode them with a {@link Decoder}.
+ */
+final class ActionBytes {
+
+    /**
+     * The characters denoting actions, in upper case.
+     */
+    private static final String COMMANDS = "HJKLUE";
+
+    /**
+     * Index into {@link #COMMANDS} of each byte, or -1 if the byte does not denote an action.
+     */
+    private static final byte[] COMMAND_INDEX = new byte[256];
+
+    static {
+        Arrays.fill(COMMAND_INDEX, (byte) -1);
+        for (int i = 0; i < COMMANDS.length(); i++) {
+            COMMAND_INDEX[COMMANDS.charAt(i)] = (byte) i;
+            COMMAND_INDEX[Character.toLowerCase(COMMANDS.charAt(i))] = (byte) i;
+        }
+    }
+
+    /**
+     * Index of the {@link Exit} action among the actions of a player.
+     */
+    static final int EXIT = COMMANDS.indexOf('E');
+
+    /**
+     * The action returned after an action file is exhausted.
+     */
+    static final Action END = new Exit(-1);
+
+    private ActionBytes() {
+    }
+
+    /**
+     * @param playerId The id of the player.
+     * @return The actions of the player, indexed by {@link #commandIndex(byte)}.
+     */
+    static @NotNull Action[] actionsOf(int playerId) {
+        final var actions = new Action[COMMANDS.length()];
+        for (int i = 0; i < actions.length; i++)
+            actions[i] = StreamInputEngine.char2Action(playerId, COMMANDS.charAt(i));
+        return actions;
+    }
+
+    /**
+     * @param b A byte at the start of a line.
+     * @return The index of the action denoted by the byte, or -1 if the byte does not denote an action.
+     */
+    static int commandIndex(byte b) {
+        return COMMAND_INDEX[b & 0xff];
+    }
+
+    /**
+     * @param action An action decodable from action files.
+     * @return The index of the action, as returned by {@link #commandIndex(byte)} for its character.
+     * @throws IllegalArgumentException when the action is an {@link InvalidInput}.
+     */
+    static int commandIndexOf(@NotNull Action action) {
+        return switch (action) {
+            case Move.Left ignored -> 0;
+            case Move.Down ignored -> 1;
+            case Move.Up ignored -> 2;
+            case Move.Right ignored -> 3;
+            case Undo ignored -> 4;
+            case Exit ignored -> EXIT;
+            case InvalidInput ignored -> throw new IllegalArgumentException("Invalid input is not in action files");
+        };
+    }
+
+    /**
+     * @param b A byte.
+     * @return True if the byte ends a line.
+     */
+    static boolean isLineTerminator(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * @param header The bytes of the first line, without the line terminator.
+     * @return The player id.
+     * @throws NumberFormatException when the first line is not a player id.
+     */
+    static int parsePlayerId(@NotNull CharSequence header) {
+        return Integer.parseInt(header.toString());
+    }
+
+    /**
+     * A source of the bytes of an action file, read chunk by chunk.
+     */
+    @FunctionalInterface
+    interface ByteSource {
+        /**
+         * Read the next chunk of bytes, blocking until it is available.
+         * The buffer returned is only used until the next call.
+         *
+         * @return The bytes from the position to the limit of a buffer, or null if the action file is exhausted.
+         */
+        @Nullable ByteBuffer read();
+    }
+
+    /**
+     * The decoder of an action file, which reads the player id on creation.
+     * The actions returned are shared instances per decoder, so fetching an action does not allocate.
+     */
+    static final class Decoder {
+
+        private final ByteSource source;
+
+        /**
+         * The chunk being decoded, or null before the first chunk.
+         */
+        private @Nullable ByteBuffer buffer;
+
+        private boolean exhausted = false;
+
+        /**
+         * Whether the next byte is the first one of a line.
+         */
+        private boolean lineStart = true;
+
+        private final int playerId;
+
+        /**
+         * The actions performed by {@link #playerId}, indexed by {@link #commandIndex(byte)}.
+         */
+        private final Action[] actions;
+
+        /**
+         * @param source The source of the bytes of the action file.
+         * @throws NoSuchElementException when the action file is empty.
+         * @throws NumberFormatException  when the first line is not a player id.
+         */
+        Decoder(@NotNull ByteSource source) {
+            this.source = source;
+            this.playerId = readPlayerId();
+            this.actions = actionsOf(playerId);
+        }
+
+        int playerId() {
+            return playerId;
+        }
+
+        /**
+         * @return The next action, or {@link #END} if the action file is exhausted.
+         */
+        @NotNull Action fetchAction() {
+            while (available(true)) {
+                final var b = buffer.get();
+                if (isLineTerminator(b)) {
+                    lineStart = true;
+                } else if (lineStart) {
+                    lineStart = false;
+                    final var index = commandIndex(b);
+                    if (index >= 0)
+                        return actions[index];
+                }
+            }
+            return END;
+        }
+
+        /**
+         * Fetch the next actions, stopping right after an {@link Exit} action.
+         * Once an action is fetched, only the bytes of the current chunk are decoded, so this method does not wait
+         * for more input when it can return an action.
+         *
+         * @param into The buffer to fill from index 0, which must not be empty.
+         * @return The number of actions fetched, which is 1 with {@link #END} if the action file is exhausted.
+         */
+        int fetchActions(@NotNull Action[] into) {
+            var count = 0;
+            while (count < into.length && available(count == 0)) {
+                final var b = buffer.get();
+                if (isLineTerminator(b)) {
+                    lineStart = true;
+                } else if (lineStart) {
+                    lineStart = false;
+                    final var index = commandIndex(b);
+                    if (index >= 0) {
+                        into[count++] = actions[index];
+                        if (index == EXIT)
+                            break;
+                    }
+                }
+            }
+            if (count == 0)
+                into[count++] = END;
+            return count;
+        }
+
+        /**
+         * Read the first line as the player id, consuming its line terminator.
+         */
+        private int readPlayerId() {
+            final var line = new StringBuilder();
+            while (available(true)) {
+                final var b = buffer.get();
+                if (isLineTerminator(b))
+                    return parsePlayerId(line);
+                line.append((char) (b & 0xff));
+            }
+            if (line.isEmpty())
+                throw new NoSuchElementException("No player id in the action file");
+            return parsePlayerId(line);
+        }
+
+        /**
+         * @param read Whether to read the next chunk from the source if the current one is drained.
+         * @return True if a byte is available in {@link #buffer}.
+         */
+        private boolean available(boolean read) {
+            while (buffer == null || !buffer.hasRemaining()) {
+                if (!read || exhausted)
+                    return false;
+                buffer = source.read();
+                if (buffer == null) {
+                    exhausted = true;
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
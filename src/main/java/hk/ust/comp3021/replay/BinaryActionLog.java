@@ -0,0 +1,204 @@
+package hk.ust.comp3021.replay;
+
+import hk.ust.comp3021.actions.Action;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The packed binary format of action files, read by {@link BinaryInputEngine}.
+ * <p>
+ * A binary action log starts with a header of {@link #HEADER_SIZE} bytes in big-endian order:
+ * <ol>
+ *     <li>the magic number {@link #MAGIC} (4 bytes);</li>
+ *     <li>the format version {@link #VERSION} (1 byte);</li>
+ *     <li>flags, where bit 0 is {@link #FLAG_RUN_LENGTH} (1 byte);</li>
+ *     <li>the player id (4 bytes);</li>
+ *     <li>the number of actions (8 bytes).</li>
+ * </ol>
+ * Actions follow the header, each denoted by a code: H=0, J=1, K=2, L=3, U=4, E=5.
+ * In {@link Encoding#NIBBLE} encoding, every byte holds two codes, the high nibble first,
+ * and the low nibble of the last byte is unused if the number of actions is odd.
+ * In {@link Encoding#RUN_LENGTH} encoding, every byte holds a code in its top 3 bits and the length of a run of that action,
+ * minus 1, in its low 5 bits.
+ */
+public final class BinaryActionLog {
+
+    /**
+     * The magic number at the start of every binary action log, i.e. {@code "SKBA"}.
+     */
+    public static final int MAGIC = 0x534b4241;
+
+    /**
+     * The current version of the format.
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * The flag of {@link Encoding#RUN_LENGTH} encoding.
+     */
+    public static final byte FLAG_RUN_LENGTH = 1;
+
+    /**
+     * The size of the header in bytes.
+     */
+    public static final int HEADER_SIZE = 18;
+
+    /**
+     * The maximum length of a run in {@link Encoding#RUN_LENGTH} encoding.
+     */
+    static final int MAX_RUN = 32;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Encoding of actions after the header.
+     */
+    public enum Encoding {
+        /**
+         * Every action takes 4 bits.
+         */
+        NIBBLE,
+
+        /**
+         * Every run of up to {@link #MAX_RUN} identical actions takes 8 bits.
+         */
+        RUN_LENGTH,
+    }
+
+    private BinaryActionLog() {
+    }
+
+    /**
+     * Convert an action file in the text format (see {@link StreamInputEngine}) to a binary action log.
+     * Lines of the text file that do not denote an action are dropped.
+     *
+     * @param textFile   The action file in the text format.
+     * @param binaryFile The binary action log to write, which is replaced if it exists.
+     * @param encoding   The encoding of actions.
+     * @return The number of actions written.
+     * @throws IOException when either file cannot be accessed.
+     */
+    public static long convert(@NotNull Path textFile, @NotNull Path binaryFile, @NotNull Encoding encoding) throws IOException {
+        try (var in = FileChannel.open(textFile);
+             var out = FileChannel.open(binaryFile,
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final var source = new ChannelInputEngine(in);
+            final var writer = new Writer(out, source.getPlayerId(), encoding);
+            final var batch = new Action[BUFFER_SIZE];
+            while (true) {
+                final var count = source.fetchActions(batch);
+                if (batch[0] == ActionBytes.END)
+                    break;
+                for (int i = 0; i < count; i++)
+                    writer.write(ActionBytes.commandIndexOf(batch[i]));
+            }
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Writer of the codes of actions to a binary action log.
+     */
+    private static final class Writer {
+        private final FileChannel out;
+        private final Encoding encoding;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long count = 0;
+
+        /**
+         * The code of the pending half byte or run, or -1 if none.
+         */
+        private int pendingCode = -1;
+
+        private int pendingRun = 0;
+
+        private Writer(@NotNull FileChannel out, int playerId, @NotNull Encoding encoding) {
+            this.out = out;
+            this.encoding = encoding;
+            buffer.putInt(MAGIC)
+                .put(VERSION)
+                .put(encoding == Encoding.RUN_LENGTH ? FLAG_RUN_LENGTH : 0)
+                .putInt(playerId)
+                .putLong(0);
+        }
+
+        private void write(int code) throws IOException {
+            count++;
+            if (encoding == Encoding.NIBBLE) {
+                if (pendingCode < 0) {
+                    pendingCode = code;
+                } else {
+                    put((byte) (pendingCode << 4 | code));
+                    pendingCode = -1;
+                }
+            } else if (code == pendingCode && pendingRun < MAX_RUN) {
+                pendingRun++;
+            } else {
+                flushRun();
+                pendingCode = code;
+                pendingRun = 1;
+            }
+        }
+
+        private void flushRun() throws IOException {
+            if (pendingCode >= 0)
+                put((byte) (pendingCode << 5 | (pendingRun - 1)));
+        }
+
+        private void put(byte b) throws IOException {
+            if (!buffer.hasRemaining())
+                drain();
+            buffer.put(b);
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                out.write(buffer);
+            buffer.clear();
+        }
+
+        /**
+         * Flush pending actions and fill in the number of actions in the header.
+         */
+        private long finish() throws IOException {
+            if (encoding == Encoding.NIBBLE) {
+                if (pendingCode >= 0)
+                    put((byte) (pendingCode << 4 | 0xf));
+            } else {
+                flushRun();
+            }
+            drain();
+            final var countField = ByteBuffer.allocate(Long.BYTES).putLong(count).flip();
+            while (countField.hasRemaining())
+                out.write(countField, HEADER_SIZE - Long.BYTES + countField.position());
+            return count;
+        }
+    }
+
+    /**
+     * Convert an action file in the text format to a binary action log.
+     *
+     * @param args The text file, the binary file, and optionally {@code --rle} for {@link Encoding#RUN_LENGTH} encoding.
+     */
+    public static void main(@NotNull String[] args) {
+        if (args.length < 2 || (args.length == 3 && !args[2].equals("--rle")) || args.length > 3) {
+            System.out.println("Usage: java -cp Sokoban.jar hk.ust.comp3021.replay.BinaryActionLog <text_file> <binary_file> [--rle]");
+            System.exit(1);
+            return;
+        }
+        try {
+            final var encoding = args.length == 3 ? Encoding.RUN_LENGTH : Encoding.NIBBLE;
+            final var count = convert(Path.of(args[0]), Path.of(args[1]), encoding);
+            System.out.println("Converted " + count + " actions");
+        } catch (IOException e) {
+            System.out.println("Failed to open files: " + e);
+            System.exit(1);
+        }
+    }
+}
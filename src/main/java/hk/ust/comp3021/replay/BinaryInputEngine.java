@@ -0,0 +1,232 @@
+package hk.ust.comp3021.replay;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.game.InputEngine;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * An input engine that decodes actions from a binary action log (see {@link BinaryActionLog}).
+ * <p>
+ * After all actions in the log are fetched, an {@link hk.ust.comp3021.actions.Exit} action will be returned.
+ * The engine owns its channel; call {@link #close()} to close it after the game.
+ */
+public class BinaryInputEngine implements InputEngine, AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+
+    private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+    /**
+     * Index of the next byte to decode in {@link #bytes}.
+     */
+    private int position = 0;
+
+    /**
+     * Number of bytes read into {@link #bytes}.
+     */
+    private int limit = 0;
+
+    private final int playerId;
+
+    private final boolean runLength;
+
+    /**
+     * The actions performed by {@link #playerId}, indexed by their codes.
+     */
+    private final Action[] actions;
+
+    /**
+     * Number of actions not fetched yet.
+     */
+    private long remaining;
+
+    /**
+     * The code of the current run, or of the low nibble not fetched yet (-1 if none).
+     */
+    private int pendingCode = -1;
+
+    /**
+     * Number of actions left in the current run.
+     */
+    private int pendingRun = 0;
+
+    /**
+     * @param channel The channel for reading the binary action log, which is closed by this engine,
+     *                also if its header cannot be read.
+     * @throws IllegalArgumentException when the channel does not start with a header of a supported version.
+     * @throws UncheckedIOException     when the channel cannot be read.
+     */
+    public BinaryInputEngine(@NotNull ReadableByteChannel channel) {
+        this.channel = channel;
+        final ByteBuffer header;
+        try {
+            header = readHeader();
+        } catch (RuntimeException e) {
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        this.runLength = (header.get() & BinaryActionLog.FLAG_RUN_LENGTH) != 0;
+        this.playerId = header.getInt();
+        this.remaining = header.getLong();
+        this.position = BinaryActionLog.HEADER_SIZE;
+        this.actions = ActionBytes.actionsOf(playerId);
+    }
+
+    /**
+     * @param actionFile The binary action log.
+     * @throws IOException when the file cannot be opened.
+     */
+    public BinaryInputEngine(@NotNull Path actionFile) throws IOException {
+        this(FileChannel.open(actionFile));
+    }
+
+    /**
+     * Read and check the header, up to its flags.
+     *
+     * @return The header, positioned at its flags.
+     */
+    private @NotNull ByteBuffer readHeader() {
+        while (limit < BinaryActionLog.HEADER_SIZE) {
+            if (!fill(limit))
+                throw new IllegalArgumentException("Not a binary action log: the header is truncated");
+        }
+        final var header = ByteBuffer.wrap(bytes, 0, BinaryActionLog.HEADER_SIZE);
+        if (header.getInt() != BinaryActionLog.MAGIC)
+            throw new IllegalArgumentException("Not a binary action log: wrong magic number");
+        final var version = header.get();
+        if (version != BinaryActionLog.VERSION)
+            throw new IllegalArgumentException("Unsupported version of binary action log: " + version);
+        return header;
+    }
+
+    /**
+     * @return The id of the player performing the actions.
+     */
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    /**
+     * Fetch the next action from the binary action log.
+     * <p>
+     * If all actions are fetched, an {@link hk.ust.comp3021.actions.Exit} action will be returned.
+     *
+     * @return the user action.
+     */
+    @Override
+    public @NotNull Action fetchAction() {
+        if (remaining == 0)
+            return ActionBytes.END;
+        remaining--;
+        return actions[nextCode()];
+    }
+
+    /**
+     * Fetch the next actions from the binary action log.
+     *
+     * @param buffer The buffer to fill from index 0, which must not be empty.
+     * @return The number of actions fetched.
+     */
+    @Override
+    public int fetchActions(@NotNull Action[] buffer) {
+        if (remaining == 0) {
+            buffer[0] = ActionBytes.END;
+            return 1;
+        }
+        final var count = (int) Math.min(buffer.length, remaining);
+        for (int i = 0; i < count; i++) {
+            final var code = nextCode();
+            buffer[i] = actions[code];
+            if (code == ActionBytes.EXIT) {
+                remaining -= i + 1;
+                return i + 1;
+            }
+        }
+        remaining -= count;
+        return count;
+    }
+
+    /**
+     * Close the channel. Fetching after closing fails unless the actions left are already read.
+     *
+     * @throws UncheckedIOException when the channel cannot be closed.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The code of the next action, which is a valid index of {@link #actions}.
+     */
+    private int nextCode() {
+        final int code;
+        if (runLength) {
+            if (pendingRun == 0) {
+                final var b = nextByte();
+                pendingCode = (b >>> 5) & 0x7;
+                pendingRun = (b & 0x1f) + 1;
+            }
+            pendingRun--;
+            code = pendingCode;
+        } else if (pendingCode >= 0) {
+            code = pendingCode;
+            pendingCode = -1;
+        } else {
+            final var b = nextByte();
+            pendingCode = b & 0xf;
+            code = (b >>> 4) & 0xf;
+        }
+        if (code >= actions.length)
+            throw new IllegalArgumentException("Invalid action code in binary action log: " + code);
+        return code;
+    }
+
+    private int nextByte() {
+        if (position == limit && !fill(0))
+            throw new UncheckedIOException(new EOFException("The binary action log is truncated"));
+        return bytes[position++];
+    }
+
+    /**
+     * Read more bytes from the channel into {@link #bytes}, starting from the given index.
+     *
+     * @param from The index to store the bytes read, which is 0 or {@link #limit}.
+     * @return False if the channel is exhausted.
+     */
+    private boolean fill(int from) {
+        try {
+            buffer.clear().position(from);
+            var read = 0;
+            while (read == 0)
+                read = channel.read(buffer);
+            if (read < 0)
+                return false;
+            position = from == 0 ? 0 : position;
+            limit = from + read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
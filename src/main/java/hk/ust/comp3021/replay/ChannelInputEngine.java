@@ -0,0 +1,133 @@
+package hk.ust.comp3021.replay;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.game.InputEngine;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * An input engine that decodes actions from the bytes of an action file, without a {@link java.util.Scanner}.
+ * <p>
+ * The action file has the same format as for {@link StreamInputEngine}:
+ * the first line is the player id, and the first character of every following line denotes an action.
+ * Lines whose first character is not an action, including empty lines, are skipped.
+ * If all lines are exhausted, an {@link hk.ust.comp3021.actions.Exit} action will be returned.
+ * <p>
+ * Bytes are read from the channel into a reusable buffer and decoded by an {@link ActionBytes.Decoder},
+ * so fetching an action does not allocate.
+ * <p>
+ * The engine owns the channel, and closes it when the end of the channel is reached.
+ * Call {@link #close()} to close it earlier, e.g. after the game ends on an {@link hk.ust.comp3021.actions.Exit} action.
+ */
+public class ChannelInputEngine implements InputEngine, AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private boolean endOfChannel = false;
+
+    private final ActionBytes.Decoder decoder;
+
+    /**
+     * @param channel The channel for reading the action file, which is closed by this engine.
+     * @throws java.util.NoSuchElementException when the channel is empty.
+     * @throws NumberFormatException           when the first line is not a player id.
+     * @throws UncheckedIOException            when the channel cannot be read.
+     */
+    public ChannelInputEngine(@NotNull ReadableByteChannel channel) {
+        this.channel = channel;
+        this.decoder = new ActionBytes.Decoder(this::read);
+    }
+
+    /**
+     * @param actionFile The action file.
+     * @throws IOException when the action file cannot be opened.
+     */
+    public ChannelInputEngine(@NotNull Path actionFile) throws IOException {
+        this(FileChannel.open(actionFile));
+    }
+
+    /**
+     * @return The id of the player performing the actions.
+     */
+    public int getPlayerId() {
+        return decoder.playerId();
+    }
+
+    /**
+     * Fetch the next action from the action file.
+     * <p>
+     * If all lines are exhausted, an {@link hk.ust.comp3021.actions.Exit} action will be returned.
+     *
+     * @return the user action.
+     */
+    @Override
+    public @NotNull Action fetchAction() {
+        return decoder.fetchAction();
+    }
+
+    /**
+     * Fetch the next actions from the action file.
+     * <p>
+     * Only bytes already read are decoded once an action is fetched, so this method does not wait for more input
+     * when it can return an action.
+     *
+     * @param buffer The buffer to fill from index 0, which must not be empty.
+     * @return The number of actions fetched.
+     */
+    @Override
+    public int fetchActions(@NotNull Action[] buffer) {
+        return decoder.fetchActions(buffer);
+    }
+
+    /**
+     * Refill the buffer from the channel, closing the channel at its end.
+     *
+     * @return The buffer, or null if the channel is exhausted.
+     */
+    private @Nullable ByteBuffer read() {
+        if (endOfChannel)
+            return null;
+        try {
+            buffer.clear();
+            var read = 0;
+            while (read == 0)
+                read = channel.read(buffer);
+            if (read < 0) {
+                close();
+                return null;
+            }
+            return buffer.flip();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Close the channel. Fetching after closing returns {@link hk.ust.comp3021.actions.Exit} actions
+     * once the bytes already read are decoded.
+     *
+     * @throws UncheckedIOException when the channel cannot be closed.
+     */
+    @Override
+    public void close() {
+        if (endOfChannel)
+            return;
+        endOfChannel = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package hk.ust.comp3021.replay;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.game.InputEngine;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * An input engine that decodes actions directly from a memory-mapped action file.
+ * <p>
+ * The action file has the same format as for {@link StreamInputEngine}, and is decoded like {@link ChannelInputEngine},
+ * but bytes are read from the page cache through a {@link MappedByteBuffer} without being copied to the heap.
+ * Files larger than a single mapping are mapped region by region, so action files of any size can be replayed.
+ * The file is closed after its last region is mapped; call {@link #close()} to close it earlier.
+ */
+public class MappedInputEngine implements InputEngine, AutoCloseable {
+
+    /**
+     * Default maximum size of a mapped region.
+     */
+    private static final long REGION_SIZE = 1L << 30;
+
+    /**
+     * Maximum size of a mapped region.
+     */
+    private final long regionSize;
+
+    /**
+     * The channel of the action file, or null after the last region is mapped.
+     */
+    private FileChannel channel;
+
+    private final long fileSize;
+
+    /**
+     * Offset in the file of the end of the last region mapped.
+     */
+    private long regionEnd = 0;
+
+    private final ActionBytes.Decoder decoder;
+
+    /**
+     * @param actionFile The action file.
+     * @throws IOException                     when the action file cannot be opened or mapped.
+     * @throws java.util.NoSuchElementException when the action file is empty.
+     * @throws NumberFormatException           when the first line is not a player id.
+     */
+    public MappedInputEngine(@NotNull Path actionFile) throws IOException {
+        this(actionFile, REGION_SIZE);
+    }
+
+    /**
+     * @param actionFile The action file.
+     * @param regionSize Maximum size of a mapped region, at most {@link Integer#MAX_VALUE}.
+     * @throws IOException when the action file cannot be opened or mapped.
+     */
+    MappedInputEngine(@NotNull Path actionFile, long regionSize) throws IOException {
+        this.regionSize = regionSize;
+        this.channel = FileChannel.open(actionFile);
+        this.fileSize = channel.size();
+        this.decoder = new ActionBytes.Decoder(this::mapNextRegion);
+    }
+
+    /**
+     * @return The id of the player performing the actions.
+     */
+    public int getPlayerId() {
+        return decoder.playerId();
+    }
+
+    /**
+     * Fetch the next action from the action file.
+     * <p>
+     * If all lines are exhausted, an {@link hk.ust.comp3021.actions.Exit} action will be returned.
+     *
+     * @return the user action.
+     */
+    @Override
+    public @NotNull Action fetchAction() {
+        return decoder.fetchAction();
+    }
+
+    /**
+     * Fetch the next actions from the action file.
+     * <p>
+     * Once an action is fetched, decoding stops at the end of the current region instead of mapping the next one.
+     *
+     * @param buffer The buffer to fill from index 0, which must not be empty.
+     * @return The number of actions fetched.
+     */
+    @Override
+    public int fetchActions(@NotNull Action[] buffer) {
+        return decoder.fetchActions(buffer);
+    }
+
+    /**
+     * Close the action file. Fetching after closing returns {@link hk.ust.comp3021.actions.Exit} actions
+     * once the regions already mapped are decoded.
+     *
+     * @throws UncheckedIOException when the file cannot be closed.
+     */
+    @Override
+    public void close() {
+        if (channel == null)
+            return;
+        final var closing = channel;
+        channel = null;
+        try {
+            closing.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Map the region following the current one, and close the file after mapping the last region.
+     *
+     * @return The region, or null if the file is exhausted.
+     */
+    private @Nullable MappedByteBuffer mapNextRegion() {
+        if (channel == null)
+            return null;
+        try {
+            final var size = Math.min(regionSize, fileSize - regionEnd);
+            MappedByteBuffer region = null;
+            if (size > 0) {
+                region = channel.map(FileChannel.MapMode.READ_ONLY, regionEnd, size);
+                regionEnd += size;
+            }
+            if (regionEnd == fileSize) {
+                // A mapping stays valid after its channel is closed.
+                close();
+            }
+            return region;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
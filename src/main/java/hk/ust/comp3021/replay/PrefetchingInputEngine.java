@@ -0,0 +1,287 @@
+package hk.ust.comp3021.replay;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.actions.Exit;
+import hk.ust.comp3021.game.InputEngine;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An input engine that fetches actions ahead from another input engine in a background reader thread.
+ * <p>
+ * The reader fetches batches of actions from the source (see {@link InputEngine#fetchActions(Action[])})
+ * and publishes them into a bounded single-producer single-consumer ring buffer,
+ * so that I/O and decoding overlap with processing the actions.
+ * This engine must be used by one thread at a time, which only pops decoded actions from the ring buffer.
+ * <p>
+ * The reader stops after the first {@link Exit} action, which is then returned by every following fetch.
+ * Call {@link #close()} to stop the reader if the game ends before that,
+ * after which an {@link Exit} action is returned once the actions already fetched are popped.
+ */
+public class PrefetchingInputEngine implements InputEngine, AutoCloseable {
+
+    /**
+     * Default capacity of the ring buffer.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Maximum number of actions the reader fetches from the source at once.
+     */
+    private static final int MAX_BATCH = 256;
+
+    private final InputEngine source;
+
+    private final Action[] ring;
+
+    private final int mask;
+
+    /**
+     * Number of actions popped by the consumer. Only the consumer writes it.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Number of actions published by the reader. Only the reader writes it.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The consumer's snapshot of {@link #tail}, to avoid reading the shared counter for every action.
+     */
+    private long cachedTail = 0;
+
+    /**
+     * The reader's snapshot of {@link #head}.
+     */
+    private long cachedHead = 0;
+
+    private volatile boolean consumerParked = false;
+
+    private volatile boolean readerParked = false;
+
+    /**
+     * The value of {@link #head} at which the parked reader has space for its next batch.
+     */
+    private volatile long readerWakeHead = 0;
+
+    private volatile @Nullable Thread consumer;
+
+    private final Thread reader;
+
+    /**
+     * Set by the reader after it has published its last action, or failed.
+     */
+    private volatile boolean readerDone = false;
+
+    private volatile @Nullable RuntimeException readerFailure;
+
+    private volatile boolean closed = false;
+
+    /**
+     * The {@link Exit} action popped, which is returned by every following fetch.
+     */
+    private @Nullable Action exit;
+
+    /**
+     * @param source        The input engine to fetch actions from.
+     * @param capacity      Capacity of the ring buffer, rounded up to a power of two.
+     * @param threadFactory Factory of the reader thread, which is made a daemon.
+     */
+    public PrefetchingInputEngine(@NotNull InputEngine source, int capacity, @NotNull ThreadFactory threadFactory) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.source = source;
+        var size = 1;
+        while (size < capacity)
+            size <<= 1;
+        this.ring = new Action[size];
+        this.mask = ring.length - 1;
+        this.reader = threadFactory.newThread(this::read);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * @param source The input engine to fetch actions from.
+     */
+    public PrefetchingInputEngine(@NotNull InputEngine source) {
+        this(source, DEFAULT_CAPACITY, ThreadFactories.platform());
+    }
+
+    /**
+     * Pop the next action fetched by the reader, waiting for it if the ring buffer is empty.
+     *
+     * @return the action to process.
+     */
+    @Override
+    public @NotNull Action fetchAction() {
+        if (exit != null)
+            return exit;
+        final var h = head.get();
+        if (!awaitAction(h)) {
+            exit = ActionBytes.END;
+            return exit;
+        }
+        final var action = take(h);
+        head.set(h + 1);
+        wakeReader();
+        return action;
+    }
+
+    /**
+     * Pop the actions fetched by the reader, waiting for at least one action if the ring buffer is empty.
+     *
+     * @param buffer The buffer to fill from index 0, which must not be empty.
+     * @return The number of actions fetched.
+     */
+    @Override
+    public int fetchActions(@NotNull Action[] buffer) {
+        if (exit != null) {
+            buffer[0] = exit;
+            return 1;
+        }
+        final var h = head.get();
+        if (!awaitAction(h)) {
+            exit = ActionBytes.END;
+            buffer[0] = exit;
+            return 1;
+        }
+        final var count = (int) Math.min(buffer.length, cachedTail - h);
+        var i = 0;
+        while (i < count) {
+            buffer[i] = take(h + i);
+            i++;
+            if (exit != null)
+                break;
+        }
+        head.set(h + i);
+        wakeReader();
+        return i;
+    }
+
+    /**
+     * Stop the reader. Actions already fetched can still be popped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(reader);
+    }
+
+    private @NotNull Action take(long index) {
+        final var slot = (int) index & mask;
+        final var action = ring[slot];
+        ring[slot] = null;
+        if (action instanceof Exit)
+            exit = action;
+        return action;
+    }
+
+    /**
+     * Wait until the action at the given index is published, or rethrow the failure of the reader.
+     *
+     * @return False if the reader has stopped without publishing the action, i.e. the engine is closed.
+     */
+    private boolean awaitAction(long index) {
+        if (index < cachedTail)
+            return true;
+        consumer = Thread.currentThread();
+        while ((cachedTail = tail.get()) == index) {
+            if (readerDone) {
+                // The reader may have published its last action after the read above.
+                cachedTail = tail.get();
+                if (cachedTail != index)
+                    break;
+                final var failure = readerFailure;
+                if (failure != null)
+                    throw failure;
+                return false;
+            }
+            consumerParked = true;
+            if (tail.get() == index && !readerDone)
+                LockSupport.park(this);
+            consumerParked = false;
+        }
+        return true;
+    }
+
+    private void wakeReader() {
+        // Waking the reader for every popped slot would make both threads take turns on every action.
+        if (readerParked && head.get() >= readerWakeHead)
+            LockSupport.unpark(reader);
+    }
+
+    private void wakeConsumer() {
+        final var thread = consumer;
+        if (consumerParked && thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    /**
+     * The body of the reader thread.
+     */
+    private void read() {
+        final var batch = new Action[Math.min(ring.length, MAX_BATCH)];
+        var t = 0L;
+        try {
+            while (!closed) {
+                final var count = source.fetchActions(batch);
+                if (!awaitSpace(t, count))
+                    return;
+                var exited = false;
+                for (int i = 0; i < count && !exited; i++) {
+                    ring[(int) t & mask] = batch[i];
+                    t++;
+                    exited = batch[i] instanceof Exit;
+                }
+                publish(t);
+                if (exited)
+                    return;
+            }
+        } catch (RuntimeException e) {
+            readerFailure = e;
+        } finally {
+            readerDone = true;
+            wakeConsumer();
+        }
+    }
+
+    /**
+     * Publish the actions written by the reader to the consumer.
+     *
+     * @param t The number of actions written.
+     */
+    private void publish(long t) {
+        tail.set(t);
+        wakeConsumer();
+    }
+
+    /**
+     * Wait until the slots of a batch starting from the given index are free.
+     *
+     * @param index The index of the first slot.
+     * @param count The number of slots, at most the capacity.
+     * @return False if the engine is closed.
+     */
+    private boolean awaitSpace(long index, int count) {
+        final var wakeHead = index + count - ring.length;
+        while (cachedHead < wakeHead) {
+            if (closed)
+                return false;
+            cachedHead = head.get();
+            if (cachedHead >= wakeHead)
+                break;
+            readerWakeHead = wakeHead;
+            readerParked = true;
+            if (head.get() < wakeHead && !closed)
+                LockSupport.park(this);
+            readerParked = false;
+        }
+        return !closed;
+    }
+}
@@ -1,6 +1,7 @@
 package hk.ust.comp3021.replay;
 
 
+import hk.ust.comp3021.actions.Action;
 import hk.ust.comp3021.actions.ActionResult;
 import hk.ust.comp3021.actions.Exit;
 import hk.ust.comp3021.game.AbstractSokobanGame;
@@ -12,8 +13,11 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.*;
 
 import static hk.ust.comp3021.utils.StringResources.*;
@@ -47,6 +51,176 @@ public class ReplaySokobanGame extends AbstractSokobanGame {
         FREE_RACE,
     }
 
+    /**
+     * Mode of rendering the game.
+     */
+    public enum RenderMode {
+        /**
+         * The game is rendered at the frame rate in a separate thread while actions are processed.
+         */
+        PACED,
+
+        /**
+         * The game is rendered at the frame rate in a separate thread, from snapshots of the game state
+         * published by the threads processing actions.
+         * Snapshots are rendered without holding the game lock, so a slow rendering engine does not block processing actions.
+         * Frames may skip intermediate states, but the final state is always rendered.
+         * Rendering engines may receive messages concurrently with rendering in this mode.
+         */
+        SNAPSHOT,
+
+        /**
+         * Actions are processed without frame pacing, and only the final state is rendered.
+         */
+        FINAL_FRAME,
+
+        /**
+         * Actions are processed without frame pacing, and the game is never rendered.
+         */
+        NONE,
+    }
+
+    /**
+     * Strategy of executing input engines in {@link Mode#ROUND_ROBIN} mode.
+     * Input engines in {@link Mode#FREE_RACE} mode always run in separate threads.
+     */
+    public enum Scheduler {
+        /**
+         * Each input engine runs in a separate thread, and threads pass the turn to each other.
+         */
+        THREADED,
+
+        /**
+         * All input engines are polled in turn by a single thread, which avoids a context switch on every action.
+         * Actions are processed in the same order as {@link #THREADED}.
+         */
+        SINGLE_THREAD,
+    }
+
+    /**
+     * Policy of the rendering thread when it is late for frames, e.g. because rendering takes longer than a frame.
+     */
+    public enum FramePolicy {
+        /**
+         * Frames that are late are rendered one after another without waiting, until rendering is on schedule again.
+         */
+        CATCH_UP,
+
+        /**
+         * Frames whose deadlines have all passed are skipped, and only the latest frame due is rendered.
+         */
+        DROP,
+    }
+
+    /**
+     * Statistics of frames of the rendering thread.
+     *
+     * @param renderedFrames       The number of frames rendered, including the final frame in {@link RenderMode#FINAL_FRAME} mode.
+     * @param droppedFrames        The number of frames skipped by {@link FramePolicy#DROP}.
+     * @param averageLatenessNanos The average time between the deadline of a paced frame and the start of rendering it.
+     */
+    public record FrameStats(long renderedFrames, long droppedFrames, long averageLatenessNanos) {
+    }
+
+    /**
+     * Options of running a replay game.
+     *
+     * @param renderMode    The mode of rendering the game.
+     * @param scheduler     The strategy of executing input engines in {@link Mode#ROUND_ROBIN} mode.
+     * @param threadFactory The factory of threads running the input engines and the rendering engine.
+     * @param batchSize     The maximum number of actions of an input engine processed under one acquisition of the game lock
+     *                      in {@link Mode#FREE_RACE} mode (see {@link InputEngine#fetchActions(Action[])}).
+     *                      Batches are not used if it is 1, and never in {@link Mode#ROUND_ROBIN} mode.
+     * @param prefetchCapacity The capacity of the buffer of actions decoded ahead from each input engine
+     *                         by a {@link PrefetchingInputEngine}, or 0 to fetch actions in the game threads.
+     * @param terminalStyle    The style of printing frames of the {@link TerminalRenderingEngine}
+     *                         created by {@link hk.ust.comp3021.SokobanGameFactory}.
+     * @param framePolicy      The policy of the rendering thread when it is late for frames.
+     */
+    public record Options(
+        @NotNull RenderMode renderMode,
+        @NotNull Scheduler scheduler,
+        @NotNull ThreadFactory threadFactory,
+        int batchSize,
+        int prefetchCapacity,
+        @NotNull TerminalRenderingEngine.Style terminalStyle,
+        @NotNull FramePolicy framePolicy
+    ) {
+        /**
+         * The default options, which render the game at the frame rate,
+         * and run each input engine in a separate platform thread processing one action at a time without prefetching.
+         * Every frame is printed in full, and late frames are caught up.
+         */
+        public static final Options DEFAULT = new Options(RenderMode.PACED, Scheduler.THREADED, ThreadFactories.platform(), 1, 0,
+            TerminalRenderingEngine.Style.FULL, FramePolicy.CATCH_UP);
+
+        /**
+         * @throws IllegalArgumentException when the batch size is not positive, or the prefetch capacity is negative.
+         */
+        public Options {
+            if (batchSize < 1)
+                throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+            if (prefetchCapacity < 0)
+                throw new IllegalArgumentException("Prefetch capacity must not be negative: " + prefetchCapacity);
+        }
+
+        /**
+         * @param renderMode The mode of rendering the game.
+         * @return A copy of these options with the given render mode.
+         */
+        public @NotNull Options withRenderMode(@NotNull RenderMode renderMode) {
+            return new Options(renderMode, scheduler, threadFactory, batchSize, prefetchCapacity, terminalStyle, framePolicy);
+        }
+
+        /**
+         * @param scheduler The strategy of executing input engines in {@link Mode#ROUND_ROBIN} mode.
+         * @return A copy of these options with the given scheduler.
+         */
+        public @NotNull Options withScheduler(@NotNull Scheduler scheduler) {
+            return new Options(renderMode, scheduler, threadFactory, batchSize, prefetchCapacity, terminalStyle, framePolicy);
+        }
+
+        /**
+         * @param threadFactory The factory of threads, e.g. {@link ThreadFactories#virtual()}.
+         * @return A copy of these options with the given thread factory.
+         */
+        public @NotNull Options withThreadFactory(@NotNull ThreadFactory threadFactory) {
+            return new Options(renderMode, scheduler, threadFactory, batchSize, prefetchCapacity, terminalStyle, framePolicy);
+        }
+
+        /**
+         * @param batchSize The maximum number of actions processed under one acquisition of the game lock.
+         * @return A copy of these options with the given batch size.
+         */
+        public @NotNull Options withBatchSize(int batchSize) {
+            return new Options(renderMode, scheduler, threadFactory, batchSize, prefetchCapacity, terminalStyle, framePolicy);
+        }
+
+        /**
+         * @param prefetchCapacity The capacity of the buffer of actions decoded ahead from each input engine, or 0 to disable.
+         * @return A copy of these options with the given prefetch capacity.
+         */
+        public @NotNull Options withPrefetchCapacity(int prefetchCapacity) {
+            return new Options(renderMode, scheduler, threadFactory, batchSize, prefetchCapacity, terminalStyle, framePolicy);
+        }
+
+        /**
+         * @param terminalStyle The style of printing frames to the terminal.
+         * @return A copy of these options with the given terminal style.
+         */
+        public @NotNull Options withTerminalStyle(@NotNull TerminalRenderingEngine.Style terminalStyle) {
+            return new Options(renderMode, scheduler, threadFactory, batchSize, prefetchCapacity, terminalStyle, framePolicy);
+        }
+
+        /**
+         * @param framePolicy The policy of the rendering thread when it is late for frames.
+         * @return A copy of these options with the given frame policy.
+         */
+        public @NotNull Options withFramePolicy(@NotNull FramePolicy framePolicy) {
+            return new Options(renderMode, scheduler, threadFactory, batchSize, prefetchCapacity, terminalStyle, framePolicy);
+        }
+    }
+
     protected final Mode mode;
     /**
      * Indicated the frame rate of the rendering engine (in FPS).
@@ -68,8 +242,18 @@ public class ReplaySokobanGame extends AbstractSokobanGame {
      */
     protected final RenderingEngine renderingEngine;
 
+    /**
+     * The options of running the game.
+     */
+    protected final Options options;
+
     private int exhaustedInputEngines = 0;
 
+    /**
+     * Number of actions other than {@link Exit} processed. Guarded by {@link #lock}.
+     */
+    private long processedActions = 0;
+
     /**
      * Create a new instance of ReplaySokobanGame.
      * Each input engine corresponds to an action file and will produce actions from the action file.
@@ -87,6 +271,28 @@ public class ReplaySokobanGame extends AbstractSokobanGame {
         @NotNull GameState gameState,
         @NotNull List<? extends InputEngine> inputEngines,
         @NotNull RenderingEngine renderingEngine
+    ) {
+        this(mode, frameRate, gameState, inputEngines, renderingEngine, Options.DEFAULT);
+    }
+
+    /**
+     * Create a new instance of ReplaySokobanGame with the given options.
+     *
+     * @param mode            The mode of the game.
+     * @param frameRate       Rendering fps.
+     * @param gameState       The game state.
+     * @param inputEngines    the input engines.
+     * @param renderingEngine the rendering engine.
+     * @param options         the options of running the game.
+     * @throws IllegalArgumentException when there are more than two players in the map.
+     */
+    public ReplaySokobanGame(
+        @NotNull Mode mode,
+        int frameRate,
+        @NotNull GameState gameState,
+        @NotNull List<? extends InputEngine> inputEngines,
+        @NotNull RenderingEngine renderingEngine,
+        @NotNull Options options
     ) {
         super(gameState);
         if (inputEngines.size() == 0)
@@ -95,6 +301,9 @@ public class ReplaySokobanGame extends AbstractSokobanGame {
         this.frameRate = frameRate;
         this.renderingEngine = renderingEngine;
         this.inputEngines = inputEngines;
+        this.options = options;
+        // Without a rendering thread, actions need not wait for the first frame.
+        this.firstRendered.set(options.renderMode() == RenderMode.PACED || options.renderMode() == RenderMode.SNAPSHOT);
     }
 
     /**
@@ -123,6 +332,22 @@ public class ReplaySokobanGame extends AbstractSokobanGame {
 
     private Semaphore[] robinChain;
 
+    /**
+     * The snapshot of the game state published for {@link RenderMode#SNAPSHOT} mode and not taken by the renderer yet.
+     * Snapshots are only published and taken by threads holding {@link #lock}.
+     */
+    private final AtomicReference<GameState> snapshot = new AtomicReference<>();
+
+    /**
+     * Whether the game state has changed since the last snapshot was made. Guarded by {@link #lock}.
+     */
+    private boolean snapshotStale = false;
+
+    private final AtomicLong renderedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong pacedFrames = new AtomicLong();
+    private final AtomicLong totalLatenessNanos = new AtomicLong();
+
     /**
      * The implementation of the Runnable for each input engine thread.
      * Each input engine should run in a separate thread.
@@ -148,6 +373,10 @@ public class ReplaySokobanGame extends AbstractSokobanGame {
 
         @Override
         public void run() {
+            if (mode == Mode.FREE_RACE && options.batchSize() > 1) {
+                runBatched();
+                return;
+            }
             var exited = false;
             try {
                 while (true) {
@@ -166,16 +395,11 @@ public class ReplaySokobanGame extends AbstractSokobanGame {
                             break;
                         }
                         if (!exited) {
-                            final var result = processAction(action);
-                            if (result instanceof ActionResult.Failed failed) {
-                                renderingEngine.message(failed.getReason());
-                            }
-                            if (action instanceof Exit) {
-                                exhaustedInputEngines++;
-                                exited = true;
-                            } else {
-                                someActionAfterRender.set(true);
-                            }
+                            exited = handleAction(action);
+                        }
+                        if (exited && mode == Mode.FREE_RACE) {
+                            // Only ROUND_ROBIN needs an exhausted engine to keep passing the turn.
+                            break;
                         }
                     } finally {
                         if (mode == Mode.ROUND_ROBIN) {
@@ -188,6 +412,120 @@ public class ReplaySokobanGame extends AbstractSokobanGame {
                 throw new RuntimeException(e);
             }
         }
+
+        /**
+         * Process actions in batches of {@link Options#batchSize()}, each under one acquisition of {@link #lock}.
+         * Used in {@link Mode#FREE_RACE} mode only, where the order of actions among input engines is not enforced.
+         */
+        private void runBatched() {
+            final var batch = new Action[options.batchSize()];
+            try {
+                while (true) {
+                    final var count = inputEngine.fetchActions(batch);
+                    lock.lock();
+                    try {
+                        if (firstRendered.get()) {
+                            firstRenderCond.await();
+                        }
+                        for (int i = 0; i < count; i++) {
+                            if (shouldStop()) {
+                                firstRenderCond.signalAll();
+                                roundRobinCond.signalAll();
+                                return;
+                            }
+                            if (handleAction(batch[i])) {
+                                return;
+                            }
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * The implementation of the Runnable that polls all input engines in turn in a single thread,
+     * used in {@link Mode#ROUND_ROBIN} mode with {@link Scheduler#SINGLE_THREAD}.
+     * <p>
+     * Actions are processed in the same order as {@link InputEngineRunnable} in {@link Mode#ROUND_ROBIN} mode,
+     * except that no more actions are fetched from an input engine after its first {@link Exit} action.
+     */
+    private class RoundRobinRunnable implements Runnable {
+        private final List<? extends InputEngine> engines;
+
+        private RoundRobinRunnable(@NotNull List<? extends InputEngine> engines) {
+            this.engines = engines;
+        }
+
+        @Override
+        public void run() {
+            final var exited = new boolean[engines.size()];
+            try {
+                for (var index = 0; !shouldStop(); index = (index + 1) % exited.length) {
+                    if (exited[index]) {
+                        continue;
+                    }
+                    final var action = engines.get(index).fetchAction();
+                    lock.lock();
+                    try {
+                        if (firstRendered.get()) {
+                            firstRenderCond.await();
+                        }
+                        if (shouldStop()) {
+                            break;
+                        }
+                        exited[index] = handleAction(action);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Process an action fetched from an input engine, and report the failure if any.
+     * This method should be called with {@link #lock} held.
+     *
+     * @param action The action to process.
+     * @return True if the action is an {@link Exit} action.
+     */
+    private boolean handleAction(@NotNull Action action) {
+        final var result = processAction(action);
+        if (result instanceof ActionResult.Failed failed) {
+            renderingEngine.message(failed.getReason());
+        }
+        if (action instanceof Exit) {
+            exhaustedInputEngines++;
+            return true;
+        }
+        processedActions++;
+        someActionAfterRender.set(true);
+        if (options.renderMode() == RenderMode.SNAPSHOT) {
+            publishSnapshot();
+        }
+        return false;
+    }
+
+    /**
+     * Publish a snapshot of the game state if the renderer has taken the last one, or mark the last one as stale.
+     * The game state is thus copied at most about once per frame, however many actions are processed,
+     * and without its undo history (see {@link GameState#snapshot()}).
+     * This method should be called with {@link #lock} held.
+     */
+    private void publishSnapshot() {
+        if (snapshot.get() == null) {
+            snapshot.set(state.snapshot());
+            snapshotStale = false;
+        } else {
+            snapshotStale = true;
+        }
     }
 
     /**
@@ -200,29 +538,16 @@ public class ReplaySokobanGame extends AbstractSokobanGame {
      */
     private class RenderingEngineRunnable implements Runnable {
         /**
-         * NOTE: You are NOT allowed to use {@link java.util.Timer} or {@link java.util.TimerTask} in this method.
-         * Please use a loop with {@link Thread#sleep(long)} instead.
+         * NOTE: Frames are paced by a loop waiting for deadlines with {@link FramePacer},
+         * instead of {@link java.util.Timer} or {@link java.util.TimerTask}.
          */
         @Override
         public void run() {
-            long startTime = System.currentTimeMillis();
-            long renderCount = 0;
+            final var pacer = new FramePacer();
             do {
-                try {
-                    var nextRenderTime = startTime + renderCount * 1000 / frameRate;
-                    var timeToWait = nextRenderTime < System.currentTimeMillis() ? 0 : nextRenderTime - System.currentTimeMillis();
-                    //noinspection BusyWait
-                    Thread.sleep(timeToWait);
-                    renderCount++;
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
+                pacer.awaitNextFrame();
                 lock.lock();
-                final var undoQuotaMessage = state.getUndoQuota()
-                    .map(it -> String.format(UNDO_QUOTA_TEMPLATE, it))
-                    .orElse(UNDO_QUOTA_UNLIMITED);
-                renderingEngine.message(undoQuotaMessage);
-                renderingEngine.render(state);
+                renderFrame();
                 if (firstRendered.get()) {
                     firstRendered.set(false);
                     firstRenderCond.signalAll();
@@ -237,23 +562,204 @@ public class ReplaySokobanGame extends AbstractSokobanGame {
         }
     }
 
+    /**
+     * The implementation of the Runnable for the rendering engine thread in {@link RenderMode#SNAPSHOT} mode.
+     * It meets the requirements of {@link RenderingEngineRunnable}, but holds {@link #lock} only to take or make snapshots,
+     * never while rendering.
+     */
+    private class SnapshotRenderingRunnable implements Runnable {
+        @Override
+        public void run() {
+            final var pacer = new FramePacer();
+            pacer.awaitNextFrame();
+            final GameState initial;
+            lock.lock();
+            try {
+                initial = state.snapshot();
+            } finally {
+                lock.unlock();
+            }
+            renderFrame(initial);
+            lock.lock();
+            try {
+                firstRendered.set(false);
+                firstRenderCond.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            while (true) {
+                pacer.awaitNextFrame();
+                GameState frame;
+                final boolean done;
+                lock.lock();
+                try {
+                    // Taken under the lock, so that no snapshot older than the frame can be published after it.
+                    frame = snapshot.getAndSet(null);
+                    if (snapshotStale) {
+                        // The state has changed since the snapshot, and may not change again to publish a newer one.
+                        frame = state.snapshot();
+                        snapshotStale = false;
+                    }
+                    done = shouldStop() && snapshot.get() == null;
+                } finally {
+                    lock.unlock();
+                }
+                if (frame != null) {
+                    renderFrame(frame);
+                }
+                if (done) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * The pacing of frames of a rendering thread at {@link #frameRate}.
+     * <p>
+     * The deadline of frame {@code k} is {@code k * 1e9 / frameRate} nanoseconds after the first frame,
+     * measured by {@link System#nanoTime()}, so errors do not accumulate and frame rates above 1000 FPS can be expressed.
+     * The thread waits for deadlines with {@link LockSupport#parkNanos(long)}.
+     */
+    private class FramePacer {
+        private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+        private final long startTime = System.nanoTime();
+
+        /**
+         * The index of the next frame.
+         */
+        private long frame = 0;
+
+        /**
+         * Wait until the deadline of the next frame, applying {@link Options#framePolicy()} if it has passed,
+         * and record the lateness.
+         */
+        private void awaitNextFrame() {
+            var deadline = deadlineOf(frame);
+            if (options.framePolicy() == FramePolicy.DROP) {
+                final var due = (System.nanoTime() - startTime) * frameRate / NANOS_PER_SECOND;
+                if (due > frame) {
+                    droppedFrames.addAndGet(due - frame);
+                    frame = due;
+                    deadline = deadlineOf(frame);
+                }
+            }
+            for (var remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new RuntimeException(new InterruptedException());
+                }
+            }
+            totalLatenessNanos.addAndGet(System.nanoTime() - deadline);
+            pacedFrames.incrementAndGet();
+            frame++;
+        }
+
+        private long deadlineOf(long index) {
+            return startTime + index * NANOS_PER_SECOND / frameRate;
+        }
+    }
+
+    /**
+     * Get the number of actions processed, excluding {@link Exit} actions.
+     * Actions that failed, e.g. moving into a wall, are counted.
+     *
+     * @return the number of actions processed.
+     */
+    public long getProcessedActions() {
+        lock.lock();
+        try {
+            return processedActions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check whether the game has been won.
+     *
+     * @return true if all box destinations are occupied by boxes.
+     */
+    public boolean isWin() {
+        lock.lock();
+        try {
+            return state.isWin();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the statistics of frames rendered so far.
+     *
+     * @return the statistics of frames.
+     */
+    public @NotNull FrameStats getFrameStats() {
+        final var paced = pacedFrames.get();
+        return new FrameStats(renderedFrames.get(), droppedFrames.get(), paced == 0 ? 0 : totalLatenessNanos.get() / paced);
+    }
+
+    /**
+     * Render the undo quota and the current game state.
+     */
+    private void renderFrame() {
+        renderFrame(state);
+    }
+
+    /**
+     * Render the undo quota and the given game state.
+     *
+     * @param gameState The game state to render, which is either {@link #state} or a snapshot of it.
+     */
+    private void renderFrame(@NotNull GameState gameState) {
+        final var undoQuotaMessage = gameState.getUndoQuota()
+            .map(it -> String.format(UNDO_QUOTA_TEMPLATE, it))
+            .orElse(UNDO_QUOTA_UNLIMITED);
+        renderingEngine.message(undoQuotaMessage);
+        renderingEngine.render(gameState);
+        renderedFrames.incrementAndGet();
+    }
+
     /**
      * Start the game.
      * This method should spawn new threads for each input engine and the rendering engine.
+     * In {@link RenderMode#FINAL_FRAME} and {@link RenderMode#NONE} modes, no rendering thread is spawned.
+     * In {@link RenderMode#SNAPSHOT} mode, the rendering thread renders snapshots of the game state.
+     * In {@link Mode#ROUND_ROBIN} mode with {@link Scheduler#SINGLE_THREAD}, all input engines share one thread.
+     * Threads are created by {@link Options#threadFactory()}.
+     * If {@link Options#prefetchCapacity()} is positive, each input engine is wrapped in a {@link PrefetchingInputEngine},
+     * whose reader thread is stopped after the game.
      * This method should wait for all threads to finish before return.
      */
     @Override
     public void run() {
-        robinChain = new Semaphore[inputEngines.size()];
-        final var threads = new ArrayList<Thread>(inputEngines.size() + 1);
-        for (var i = 0; i < inputEngines.size(); i++) {
-            final var th = new Thread(new InputEngineRunnable(i, inputEngines.get(i)));
-            final var s = new Semaphore(0);
-            robinChain[i] = s;
-            threads.add(i, th);
+        final List<? extends InputEngine> engines;
+        final var prefetchers = new ArrayList<PrefetchingInputEngine>();
+        if (options.prefetchCapacity() > 0) {
+            for (final var engine : inputEngines)
+                prefetchers.add(new PrefetchingInputEngine(engine, options.prefetchCapacity(), options.threadFactory()));
+            engines = prefetchers;
+        } else {
+            engines = inputEngines;
+        }
+        final var threads = new ArrayList<Thread>(engines.size() + 1);
+        if (mode == Mode.ROUND_ROBIN && options.scheduler() == Scheduler.SINGLE_THREAD) {
+            threads.add(options.threadFactory().newThread(new RoundRobinRunnable(engines)));
+        } else {
+            robinChain = new Semaphore[engines.size()];
+            for (var i = 0; i < engines.size(); i++) {
+                final var th = options.threadFactory().newThread(new InputEngineRunnable(i, engines.get(i)));
+                final var s = new Semaphore(0);
+                robinChain[i] = s;
+                threads.add(i, th);
+            }
+            robinChain[0].release();
         }
-        robinChain[0].release();
-        threads.add(inputEngines.size(), new Thread(new RenderingEngineRunnable()));
+        if (options.renderMode() == RenderMode.PACED)
+            threads.add(options.threadFactory().newThread(new RenderingEngineRunnable()));
+        if (options.renderMode() == RenderMode.SNAPSHOT)
+            threads.add(options.threadFactory().newThread(new SnapshotRenderingRunnable()));
         threads.forEach(Thread::start);
         threads.forEach(th -> {
             try {
@@ -262,6 +768,9 @@ public class ReplaySokobanGame extends AbstractSokobanGame {
                 throw new RuntimeException(e);
             }
         });
+        prefetchers.forEach(PrefetchingInputEngine::close);
+        if (options.renderMode() == RenderMode.FINAL_FRAME)
+            renderFrame();
         renderingEngine.message(GAME_EXIT_MESSAGE);
         if (state.isWin()) {
             renderingEngine.message(WIN_MESSAGE);
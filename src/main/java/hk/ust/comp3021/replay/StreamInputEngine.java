@@ -4,51 +4,62 @@ import hk.ust.comp3021.actions.*;
 import hk.ust.comp3021.game.InputEngine;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.*;
-import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.io.InputStream;
+import java.nio.channels.Channels;
 
 /**
  * An input engine that fetches actions from terminal input.
+ * <p>
+ * The input is decoded byte by byte by a {@link ChannelInputEngine} over the stream,
+ * which closes the stream at its end or when this engine is closed.
  */
-public class StreamInputEngine implements InputEngine {
+public class StreamInputEngine implements InputEngine, AutoCloseable {
 
     /**
-     * The {@link Scanner} for reading input from the terminal.
+     * The decoder of actions from the input stream.
      */
-    private final Scanner terminalScanner;
-
-    private final int playerId;
+    private final ChannelInputEngine reader;
 
     /**
-     * @param fileStream The stream for reading the input file.
+     * @param fileStream The stream for reading the input file, which is closed by this engine.
      */
     public StreamInputEngine(@NotNull InputStream fileStream) {
-        this.terminalScanner = new Scanner(fileStream);
-        this.playerId = Integer.parseInt(terminalScanner.nextLine());
+        this.reader = new ChannelInputEngine(Channels.newChannel(fileStream));
     }
 
     /**
      * Fetch an action from user in terminal to process.
      * <p>
+     * Lines that do not denote an action are skipped.
      * If all lines are exhausted, an {@link Exit} action will be returned.
      *
      * @return the user action.
      */
     @Override
     public @NotNull Action fetchAction() {
-        try {
-            while (true) {
-                var inputLine = terminalScanner.nextLine();
-                final var move = inputLine.charAt(0);
-                try {
-                    return char2Action(playerId, move);
-                } catch (IllegalArgumentException ignored) {
-                }
-            }
-        } catch (NoSuchElementException e) {
-            return new Exit(-1);
-        }
+        return reader.fetchAction();
+    }
+
+    /**
+     * Fetch the actions already read from the input stream, or wait for at least one action.
+     *
+     * @param buffer The buffer to fill from index 0, which must not be empty.
+     * @return The number of actions fetched.
+     */
+    @Override
+    public int fetchActions(@NotNull Action[] buffer) {
+        return reader.fetchActions(buffer);
+    }
+
+    /**
+     * Close the input stream.
+     *
+     * @throws java.io.UncheckedIOException when the stream cannot be closed.
+     * @see ChannelInputEngine#close()
+     */
+    @Override
+    public void close() {
+        reader.close();
     }
 
     /**
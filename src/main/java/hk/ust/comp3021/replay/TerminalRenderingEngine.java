@@ -8,45 +8,255 @@ import hk.ust.comp3021.game.GameState;
 import hk.ust.comp3021.game.Position;
 import hk.ust.comp3021.game.RenderingEngine;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * A rendering engine that prints to the terminal.
+ * Rendering and messages are synchronized, since they may be called concurrently
+ * in {@link ReplaySokobanGame.RenderMode#SNAPSHOT} mode.
  */
 public class TerminalRenderingEngine implements RenderingEngine {
 
+    /**
+     * Style of printing frames after the first one.
+     * <p>
+     * Incremental styles find the changed cells with {@link GameState#drainDirtyCells(java.util.function.LongConsumer)},
+     * so they must be the only observer draining the game state.
+     */
+    public enum Style {
+        /**
+         * Every frame is printed in full.
+         */
+        FULL,
+
+        /**
+         * Only cells changed since the last frame are redrawn in place with ANSI escape sequences,
+         * and identical frames are not printed.
+         * Consecutive identical messages are printed once, so that they do not push the frame out of the screen.
+         * The frame is printed in full again if too many lines have been printed after it.
+         */
+        ANSI,
+
+        /**
+         * Only cells changed since the last frame are printed, in one line of the form {@code * x,y:c x,y:c ...},
+         * and identical frames are not printed.
+         * This suits logs, where the frames can be reconstructed from the first one.
+         */
+        DIFF,
+    }
+
+    /**
+     * Default number of lines the frame and the messages after it may take before {@link Style#ANSI}
+     * prints the frame in full again, i.e. the height of a classic terminal.
+     */
+    public static final int DEFAULT_SCREEN_ROWS = 24;
+
+    private static final String ESC = "\033";
+
     private final PrintStream outputSteam;
 
+    private final Style style;
+
+    private final int screenRows;
+
+    /**
+     * The game state of the last frame.
+     */
+    private @Nullable GameState lastState;
+
+    private int width;
+
+    private int height;
+
+    /**
+     * The cells of box destinations of {@link #lastState}, indexed by {@code y * width + x}.
+     */
+    private final BitSet destinations = new BitSet();
+
+    /**
+     * The characters of the frame being rendered, indexed by {@code y * width + x}.
+     */
+    private char[] frame = new char[0];
+
+    /**
+     * The cells of {@link #frame} changed since the last frame printed, in order of change.
+     */
+    private int[] changedCells = new int[16];
+
+    private int changedCount = 0;
+
+    /**
+     * Number of lines printed after the last frame.
+     */
+    private int linesSinceFrame = 0;
+
+    private @Nullable String lastMessage;
+
     /**
      * @param outputSteam The {@link PrintStream} to write the output to.
      */
     public TerminalRenderingEngine(@NotNull PrintStream outputSteam) {
+        this(outputSteam, Style.FULL);
+    }
+
+    /**
+     * @param outputSteam The {@link PrintStream} to write the output to.
+     * @param style       The style of printing frames.
+     */
+    public TerminalRenderingEngine(@NotNull PrintStream outputSteam, @NotNull Style style) {
+        this(outputSteam, style, DEFAULT_SCREEN_ROWS);
+    }
+
+    /**
+     * @param outputSteam The {@link PrintStream} to write the output to.
+     * @param style       The style of printing frames.
+     * @param screenRows  The number of lines visible in the terminal, used by {@link Style#ANSI}.
+     */
+    public TerminalRenderingEngine(@NotNull PrintStream outputSteam, @NotNull Style style, int screenRows) {
         this.outputSteam = outputSteam;
+        this.style = style;
+        this.screenRows = screenRows;
     }
 
     @Override
-    public void render(@NotNull GameState state) {
-        final var builder = new StringBuilder();
-        for (int y = 0; y < state.getMapMaxHeight(); y++) {
-            for (int x = 0; x < state.getMapMaxWidth(); x++) {
-                final var entity = state.getEntity(Position.of(x, y));
-                final var charToPrint = switch (entity) {
-                    case Wall ignored -> '#';
-                    case Box b -> (char) (b.getPlayerId() + 'a');
-                    case Player p -> (char) (p.getId() + 'A');
-                    case Empty ignored -> state.getDestinations().contains(new Position(x, y)) ? '@' : '.';
-                    case null -> ' ';
-                };
-                builder.append(charToPrint);
+    public synchronized void render(@NotNull GameState state) {
+        final var sameSize = lastState != null && state.getMapMaxWidth() == width && state.getMapMaxHeight() == height;
+        if (style == Style.FULL || !sameSize) {
+            if (state != lastState) {
+                reset(state);
+                // The whole board is drawn below.
+                state.drainDirtyCells(position -> { });
             }
-            builder.append('\n');
+            drawFrame(state);
+            printFull();
+            return;
+        }
+        if (state == lastState) {
+            state.drainDirtyCells(this::updateCell);
+        } else {
+            // Another state of the same size, e.g. a snapshot of the last one, is compared cell by cell.
+            lastState = state;
+            loadDestinations(state);
+            state.drainDirtyCells(position -> { });
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    updateCell(Position.pack(x, y));
+                }
+            }
+        }
+        if (style == Style.ANSI && height + linesSinceFrame >= screenRows) {
+            printFull();
+        } else {
+            printChanges();
         }
-        outputSteam.print(builder);
     }
 
     @Override
-    public void message(@NotNull String content) {
+    public synchronized void message(@NotNull String content) {
+        if (style == Style.ANSI) {
+            if (content.equals(lastMessage))
+                return;
+            lastMessage = content;
+            linesSinceFrame += Math.max(1, (int) content.lines().count());
+        }
         outputSteam.println(content);
     }
+
+    /**
+     * Prepare for rendering frames of another game state.
+     */
+    private void reset(@NotNull GameState state) {
+        lastState = state;
+        width = state.getMapMaxWidth();
+        height = state.getMapMaxHeight();
+        frame = new char[width * height];
+        changedCount = 0;
+        loadDestinations(state);
+    }
+
+    private void loadDestinations(@NotNull GameState state) {
+        // Both are indexed by y * width + x, so the bitset of the game state is taken word by word.
+        destinations.clear();
+        destinations.or(BitSet.valueOf(state.getDestinationBits()));
+    }
+
+    /**
+     * Draw the game state into {@link #frame}.
+     */
+    private void drawFrame(@NotNull GameState state) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                frame[y * width + x] = charAt(state, Position.pack(x, y), y * width + x);
+            }
+        }
+    }
+
+    /**
+     * Update the cell of {@link #frame} at the given position of {@link #lastState}, recording it if changed.
+     *
+     * @param position the position, packed by {@link Position#pack(int, int)}.
+     */
+    private void updateCell(long position) {
+        final var cell = Position.y(position) * width + Position.x(position);
+        final var c = charAt(lastState, position, cell);
+        if (c == frame[cell])
+            return;
+        frame[cell] = c;
+        if (changedCount == changedCells.length)
+            changedCells = Arrays.copyOf(changedCells, 2 * changedCount);
+        changedCells[changedCount++] = cell;
+    }
+
+    private char charAt(@NotNull GameState state, long position, int cell) {
+        return switch (state.getEntity(position)) {
+            case Wall ignored -> '#';
+            case Box b -> (char) (b.getPlayerId() + 'a');
+            case Player p -> (char) (p.getId() + 'A');
+            case Empty ignored -> destinations.get(cell) ? '@' : '.';
+            case null -> ' ';
+        };
+    }
+
+    private void printFull() {
+        final var builder = new StringBuilder(height * (width + 1));
+        for (int y = 0; y < height; y++) {
+            builder.append(frame, y * width, width).append('\n');
+        }
+        outputSteam.print(builder);
+        linesSinceFrame = 0;
+        changedCount = 0;
+    }
+
+    /**
+     * Print the cells changed since the last frame, if any.
+     */
+    private void printChanges() {
+        final var builder = new StringBuilder();
+        for (int i = 0; i < changedCount; i++) {
+            final var cell = changedCells[i];
+            final var x = cell % width;
+            final var y = cell / width;
+            if (style == Style.ANSI) {
+                if (builder.isEmpty())
+                    builder.append(ESC).append('7');
+                // Move up from the line below the frame and the messages printed after it, then restore the cursor.
+                builder.append(ESC).append('[').append(height + linesSinceFrame - y).append('A')
+                    .append(ESC).append('[').append(x + 1).append('G')
+                    .append(frame[cell])
+                    .append(ESC).append('8');
+            } else {
+                builder.append(builder.isEmpty() ? "*" : "").append(' ').append(x).append(',').append(y).append(':').append(frame[cell]);
+            }
+        }
+        changedCount = 0;
+        if (builder.isEmpty())
+            return;
+        if (style == Style.DIFF)
+            builder.append('\n');
+        outputSteam.print(builder);
+    }
 }
@@ -0,0 +1,55 @@
+package hk.ust.comp3021.replay;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Factories of threads that run replay games and their input engines.
+ * <p>
+ * Virtual threads are looked up reflectively through {@code Thread.ofVirtual()}, so that the game runs on JVMs without them.
+ * On such JVMs, {@link #virtual()} falls back to platform threads.
+ */
+public final class ThreadFactories {
+
+    private static final @Nullable ThreadFactory VIRTUAL = probeVirtual();
+
+    private ThreadFactories() {
+    }
+
+    /**
+     * @return A factory of platform threads, i.e. {@code new Thread(runnable)}.
+     */
+    public static @NotNull ThreadFactory platform() {
+        return Thread::new;
+    }
+
+    /**
+     * @return A factory of virtual threads if the JVM supports them, or a factory of platform threads otherwise.
+     */
+    public static @NotNull ThreadFactory virtual() {
+        return VIRTUAL != null ? VIRTUAL : platform();
+    }
+
+    /**
+     * @return True if {@link #virtual()} creates virtual threads.
+     */
+    public static boolean isVirtualSupported() {
+        return VIRTUAL != null;
+    }
+
+    /**
+     * @return {@code Thread.ofVirtual().factory()}, or null if virtual threads are unavailable on this JVM.
+     */
+    private static @Nullable ThreadFactory probeVirtual() {
+        try {
+            final var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final var factory = Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            return (ThreadFactory) factory;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Either the method does not exist, or virtual threads are a preview feature that is not enabled.
+            return null;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package hk.ust.comp3021.solver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.BitSet;
+
+/**
+ * The nodes of a parallel search, shared by all workers.
+ * <p>
+ * The table is split into {@link #STRIPES} stripes, each a {@link StateTable} guarded by its own lock,
+ * and a key belongs to the stripe chosen by the high bits of its hash, while the stripe itself probes by the low bits.
+ * Workers expanding different states therefore rarely contend for the same lock.
+ * A node is numbered by its number in the stripe shifted left by {@link #STRIPE_BITS}, combined with the stripe.
+ * <p>
+ * Nodes are added and improved by workers holding the stripe locks, and closed by the coordinator of the search.
+ * The other accessors do not lock, and may only be used between waves of expansion,
+ * when no worker is running and the completion of the wave has published all writes.
+ */
+final class ConcurrentStateTable implements SearchTree {
+
+    private static final int STRIPE_BITS = 6;
+
+    static final int STRIPES = 1 << STRIPE_BITS;
+
+    /**
+     * The result of {@link #improve} if the node is absent.
+     */
+    static final int ABSENT = -1;
+
+    /**
+     * The result of {@link #improve} and {@link #add} if the node need not be queued.
+     */
+    static final int UNCHANGED = -2;
+
+    private final StateTable[] stripes = new StateTable[STRIPES];
+
+    private final BitSet closed = new BitSet();
+
+    /**
+     * @param keyLength the length of keys.
+     */
+    ConcurrentStateTable(int keyLength) {
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new StateTable(keyLength);
+    }
+
+    private static int stripe(int hash) {
+        return hash >>> (Integer.SIZE - STRIPE_BITS);
+    }
+
+    private static int node(int stripe, int local) {
+        return local << STRIPE_BITS | stripe;
+    }
+
+    private StateTable stripeOf(int node) {
+        return stripes[node & (STRIPES - 1)];
+    }
+
+    private static int local(int node) {
+        return node >>> STRIPE_BITS;
+    }
+
+    /**
+     * Add the root of the search.
+     *
+     * @param key      the key of the root.
+     * @param estimate the estimate of the root.
+     * @param player   the cell of the player.
+     * @return the number of the root.
+     */
+    int addRoot(char @NotNull [] key, int estimate, int player) {
+        final var hash = StateTable.hash(key);
+        final var stripe = stripe(hash);
+        final var table = stripes[stripe];
+        synchronized (table) {
+            final var local = ~table.findOrAdd(key, hash);
+            table.set(local, -1, 0, estimate, -1, player);
+            return node(stripe, local);
+        }
+    }
+
+    /**
+     * Lower the cost of the node of a key, if it exists, is not closed and is reached more cheaply.
+     * Of paths of equal cost, the one stored first is kept.
+     *
+     * @param key    the key.
+     * @param hash   the hash of the key.
+     * @param parent the number of the node it is reached from.
+     * @param cost   the cost of reaching it.
+     * @param push   the push reaching it from the parent.
+     * @param player the cell of the player after the push.
+     * @return the number of the node if it is improved, {@link #UNCHANGED} if it is not, or {@link #ABSENT}.
+     */
+    int improve(char @NotNull [] key, int hash, int parent, int cost, int push, int player) {
+        final var stripe = stripe(hash);
+        final var table = stripes[stripe];
+        synchronized (table) {
+            final var local = table.find(key, hash);
+            if (local < 0)
+                return ABSENT;
+            return improve(table, stripe, local, parent, cost, push, player);
+        }
+    }
+
+    /**
+     * Add the node of a key, or lower its cost if another worker has added it since {@link #improve} found it absent.
+     *
+     * @param estimate the estimate of the key, computed without holding a lock.
+     * @return the number of the node if it should be queued, or {@link #UNCHANGED}.
+     * @see #improve
+     */
+    int add(char @NotNull [] key, int hash, int parent, int cost, int estimate, int push, int player) {
+        final var stripe = stripe(hash);
+        final var table = stripes[stripe];
+        synchronized (table) {
+            final var found = table.findOrAdd(key, hash);
+            if (found >= 0)
+                return improve(table, stripe, found, parent, cost, push, player);
+            table.set(~found, parent, cost, estimate, push, player);
+            return estimate < Level.INFINITY ? node(stripe, ~found) : UNCHANGED;
+        }
+    }
+
+    private int improve(StateTable table, int stripe, int local, int parent, int cost, int push, int player) {
+        final var node = node(stripe, local);
+        if (closed.get(node) || cost >= table.cost(local))
+            return UNCHANGED;
+        table.set(local, parent, cost, table.estimate(local), push, player);
+        return node;
+    }
+
+    /**
+     * @return the number of nodes.
+     */
+    long size() {
+        var size = 0L;
+        for (final var table : stripes)
+            size += table.size();
+        return size;
+    }
+
+    int cost(int node) {
+        return stripeOf(node).cost(local(node));
+    }
+
+    int estimate(int node) {
+        return stripeOf(node).estimate(local(node));
+    }
+
+    @Override
+    public int parent(int node) {
+        return stripeOf(node).parent(local(node));
+    }
+
+    @Override
+    public void key(int node, char @NotNull [] into) {
+        stripeOf(node).key(local(node), into);
+    }
+
+    @Override
+    public int push(int node) {
+        return stripeOf(node).push(local(node));
+    }
+
+    @Override
+    public int player(int node) {
+        return stripeOf(node).player(local(node));
+    }
+
+    /**
+     * @param node the number of a node.
+     * @return whether the node is closed.
+     */
+    boolean isClosed(int node) {
+        return closed.get(node);
+    }
+
+    /**
+     * Close a node, so that it is never improved again.
+     *
+     * @param node the number of the node.
+     */
+    void close(int node) {
+        closed.set(node);
+    }
+}
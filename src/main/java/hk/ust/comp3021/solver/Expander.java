@@ -0,0 +1,340 @@
+package hk.ust.comp3021.solver;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The generation of successor states by pushes, shared by the searches.
+ * <p>
+ * A state is encoded as a compact key: a {@code char[]} holding the player cell at index 0,
+ * followed by the cells of all boxes in ascending order.
+ * Under {@link Solver.Metric#PUSHES}, the player cell of a key is normalized to the smallest cell the player can reach,
+ * since states differing only in where the player stands within the same area need the same pushes.
+ * Under {@link Solver.Metric#MOVES}, it is the exact cell of the player after the last push.
+ * <p>
+ * Successors are the states after one push of a box that the player can walk to, without walking through boxes.
+ * Pushes leading to deadlocks are pruned:
+ * <li>pushing a box into a dead cell, from which it can never reach a goal (see {@link Level#isLive(int)});</li>
+ * <li>pushing a box into a 2x2 block of walls and boxes with a box off goal, where none of them can move again.</li>
+ * <p>
+ * An instance reuses its buffers and must be confined to one thread.
+ */
+final class Expander {
+
+    /**
+     * The receiver of the successors of a state.
+     */
+    @FunctionalInterface
+    interface Successors {
+        /**
+         * @param key    the key of the successor, in a buffer reused for the next successor.
+         * @param cost   the cost of the push under the metric, including the walk to the box under {@link Solver.Metric#MOVES}.
+         * @param push   the push, see {@link Expander#push(int, int)}.
+         * @param player the cell of the player after the push.
+         */
+        void accept(char @NotNull [] key, int cost, int push, int player);
+    }
+
+    private final Level level;
+
+    private final Solver.Metric metric;
+
+    private final Matching matching;
+
+    private final int boxCount;
+
+    /**
+     * The generation of {@link #boxMarks}; a cell holds a box if its mark equals it.
+     */
+    private int boxGeneration = 0;
+
+    private final int[] boxMarks;
+
+    /**
+     * The area the player of the state being expanded can walk to.
+     */
+    private final Reach walkable;
+
+    /**
+     * The area the player of a successor can walk to, used to normalize the player cell of its key.
+     */
+    private final Reach normalizer;
+
+    private final char[] child;
+
+    /**
+     * @param level  the level to search.
+     * @param metric the cost of pushes.
+     */
+    Expander(@NotNull Level level, @NotNull Solver.Metric metric) {
+        this.level = level;
+        this.metric = metric;
+        this.matching = new Matching(level);
+        this.boxCount = level.goalCount();
+        this.boxMarks = new int[level.size()];
+        this.walkable = new Reach(level.size());
+        this.normalizer = new Reach(level.size());
+        this.child = new char[1 + boxCount];
+    }
+
+    /**
+     * @param box       the cell of the box before the push.
+     * @param direction the direction of the push.
+     * @return the push, packed into an int.
+     */
+    static int push(int box, int direction) {
+        return box << 2 | direction;
+    }
+
+    /**
+     * @param push a push packed by {@link #push(int, int)}.
+     * @return the cell of the box before the push.
+     */
+    static int pushedBox(int push) {
+        return push >>> 2;
+    }
+
+    /**
+     * @param push a push packed by {@link #push(int, int)}.
+     * @return the direction of the push.
+     */
+    static int pushDirection(int push) {
+        return push & 3;
+    }
+
+    /**
+     * @return the length of keys.
+     */
+    int keyLength() {
+        return 1 + boxCount;
+    }
+
+    /**
+     * @return the key of the initial state.
+     */
+    char @NotNull [] rootKey() {
+        final var key = new char[keyLength()];
+        final var boxes = level.startBoxes();
+        for (int i = 0; i < boxCount; i++)
+            key[1 + i] = (char) boxes[i];
+        markBoxes(key);
+        key[0] = (char) playerKey(level.startPlayer());
+        return key;
+    }
+
+    /**
+     * @param key the key of a state.
+     * @return the admissible estimate of the cost of solving the state, or {@link Level#INFINITY} if it is a deadlock.
+     */
+    int estimate(char @NotNull [] key) {
+        return matching.cost(key, 1);
+    }
+
+    /**
+     * @param key the key of a state.
+     * @return true if every box is on a goal.
+     */
+    boolean isSolved(char @NotNull [] key) {
+        for (int i = 1; i < key.length; i++) {
+            if (!level.isGoal(key[i]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Generate the successors of a state.
+     *
+     * @param key        the key of the state.
+     * @param player     the cell of the player.
+     * @param successors the receiver of the successors.
+     */
+    void expand(char @NotNull [] key, int player, @NotNull Successors successors) {
+        markBoxes(key);
+        walkable.search(player);
+        for (int i = 1; i <= boxCount; i++) {
+            final int box = key[i];
+            for (int direction = 0; direction < 4; direction++) {
+                final var offset = level.offset(direction);
+                final var from = box - offset;
+                final var to = box + offset;
+                if (!walkable.contains(from) || !level.isFloor(to) || isBox(to) || !level.isLive(to) || isFrozen(to, box))
+                    continue;
+                final var cost = metric == Solver.Metric.PUSHES ? 1 : walkable.distance(from) + 1;
+                writeChild(key, i, to);
+                // Move the box in the marks while the player key of the child is computed, then move it back.
+                boxMarks[box] = 0;
+                boxMarks[to] = boxGeneration;
+                child[0] = (char) playerKey(box);
+                boxMarks[to] = 0;
+                boxMarks[box] = boxGeneration;
+                successors.accept(child, cost, push(box, direction), box);
+            }
+        }
+    }
+
+    /**
+     * Find the moves of the player walking between two cells without pushing boxes.
+     *
+     * @param key  the key of the state.
+     * @param from the cell the player starts at.
+     * @param to   the cell to walk to.
+     * @return the directions of the moves, in {@link Level#DIRECTIONS}, or null if the cell is not reachable.
+     */
+    @Nullable String walk(char @NotNull [] key, int from, int to) {
+        markBoxes(key);
+        walkable.search(from);
+        if (!walkable.contains(to))
+            return null;
+        final var path = new char[walkable.distance(to)];
+        var cell = to;
+        for (int i = path.length - 1; i >= 0; i--) {
+            final var direction = walkable.step(cell);
+            path[i] = Level.DIRECTIONS.charAt(direction);
+            cell -= level.offset(direction);
+        }
+        return new String(path);
+    }
+
+    /**
+     * Write the boxes of a successor into {@link #child}, keeping them in ascending order.
+     *
+     * @param key   the key of the state.
+     * @param index the index in the key of the box pushed.
+     * @param to    the cell the box is pushed into.
+     */
+    private void writeChild(char @NotNull [] key, int index, int to) {
+        var j = 1;
+        var inserted = false;
+        for (int i = 1; i <= boxCount; i++) {
+            if (i == index)
+                continue;
+            if (!inserted && to < key[i]) {
+                child[j++] = (char) to;
+                inserted = true;
+            }
+            child[j++] = key[i];
+        }
+        if (!inserted)
+            child[j] = (char) to;
+    }
+
+    private int playerKey(int player) {
+        if (metric == Solver.Metric.MOVES)
+            return player;
+        normalizer.search(player);
+        return normalizer.smallest();
+    }
+
+    private void markBoxes(char @NotNull [] key) {
+        boxGeneration++;
+        for (int i = 1; i < key.length; i++)
+            boxMarks[key[i]] = boxGeneration;
+    }
+
+    private boolean isBox(int cell) {
+        return boxMarks[cell] == boxGeneration;
+    }
+
+    private boolean isBlocked(int cell) {
+        return !level.isFloor(cell) || isBox(cell);
+    }
+
+    /**
+     * @param to   the cell a box is pushed into.
+     * @param from the cell the box is pushed from, which is free after the push.
+     * @return true if the box forms a 2x2 block of walls and boxes with a box off goal.
+     */
+    private boolean isFrozen(int to, int from) {
+        final var width = level.width();
+        for (int dx = -1; dx <= 1; dx += 2) {
+            for (int dy = -width; dy <= width; dy += 2 * width) {
+                final var side = to + dx;
+                final var end = to + dy;
+                final var corner = to + dx + dy;
+                if (side == from || end == from || !isBlocked(side) || !isBlocked(end) || !isBlocked(corner))
+                    continue;
+                if (!level.isGoal(to) || isBoxOffGoal(side) || isBoxOffGoal(end) || isBoxOffGoal(corner))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isBoxOffGoal(int cell) {
+        return isBox(cell) && !level.isGoal(cell);
+    }
+
+    /**
+     * A breadth-first search of the cells the player can walk to without pushing boxes,
+     * recording their distances and the steps into them.
+     */
+    private final class Reach {
+
+        /**
+         * The generation of {@link #marks}; a cell is reached if its mark equals it.
+         */
+        private int generation = 0;
+
+        private final int[] marks;
+
+        private final int[] distances;
+
+        /**
+         * The direction of the step into each reached cell, used to walk back along a shortest path.
+         */
+        private final byte[] steps;
+
+        private final int[] queue;
+
+        private int count = 0;
+
+        private Reach(int size) {
+            this.marks = new int[size];
+            this.distances = new int[size];
+            this.steps = new byte[size];
+            this.queue = new int[size];
+        }
+
+        private void search(int start) {
+            generation++;
+            marks[start] = generation;
+            distances[start] = 0;
+            queue[0] = start;
+            var head = 0;
+            var tail = 1;
+            while (head < tail) {
+                final var cell = queue[head++];
+                for (int direction = 0; direction < 4; direction++) {
+                    final var next = cell + level.offset(direction);
+                    if (marks[next] == generation || isBlocked(next))
+                        continue;
+                    marks[next] = generation;
+                    distances[next] = distances[cell] + 1;
+                    steps[next] = (byte) direction;
+                    queue[tail++] = next;
+                }
+            }
+            count = tail;
+        }
+
+        private boolean contains(int cell) {
+            return marks[cell] == generation;
+        }
+
+        private int distance(int cell) {
+            return distances[cell];
+        }
+
+        private int step(int cell) {
+            return steps[cell];
+        }
+
+        private int smallest() {
+            var smallest = queue[0];
+            for (int i = 1; i < count; i++)
+                smallest = Math.min(smallest, queue[i]);
+            return smallest;
+        }
+    }
+}
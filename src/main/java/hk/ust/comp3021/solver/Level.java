@@ -0,0 +1,178 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.game.GameState;
+import hk.ust.comp3021.game.Position;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The static analysis of a single-player {@link GameMap} shared by searches on it.
+ * <p>
+ * Cells are indexed by {@code y * width + x}, as in the bitsets of {@link GameState}.
+ * Since maps have closed boundaries, every floor cell has its four neighbours inside the map,
+ * so neighbours are found by adding {@link #offset(int)} without bounds checks.
+ */
+final class Level {
+
+    /**
+     * The distance of cells from which a box can never reach a goal.
+     */
+    static final int INFINITY = Integer.MAX_VALUE / 4;
+
+    /**
+     * The characters of the directions in action files, i.e. left, down, up and right.
+     */
+    static final String DIRECTIONS = "HJKL";
+
+    private final int width;
+
+    private final int size;
+
+    private final int playerId;
+
+    private final boolean[] floor;
+
+    private final boolean[] goal;
+
+    /**
+     * Cells from which a box can be pushed to some goal, ignoring other boxes.
+     */
+    private final boolean[] live;
+
+    private final int[] offsets;
+
+    /**
+     * Push distances from each cell to each goal, ignoring other boxes, indexed by {@code goal * size + cell}.
+     */
+    private final int[] pushDistances;
+
+    private final int goalCount;
+
+    private final int startPlayer;
+
+    private final int[] startBoxes;
+
+    /**
+     * @param gameMap a game map with exactly one player.
+     * @throws IllegalArgumentException if the map has more than one player or is too large for compact state keys.
+     */
+    Level(@NotNull GameMap gameMap) {
+        final var state = new GameState(gameMap.getTemplate());
+        final var players = state.getAllPlayers();
+        if (players.size() != 1)
+            throw new IllegalArgumentException("Only single-player maps can be solved, found " + players.size() + " players");
+        this.playerId = players.iterator().next().getId();
+        this.width = state.getMapMaxWidth();
+        this.size = width * state.getMapMaxHeight();
+        if (size > Character.MAX_VALUE)
+            throw new IllegalArgumentException("Map is too large to solve: " + size + " cells");
+        this.offsets = new int[]{-1, width, -width, 1};
+
+        final var walls = BitSet.valueOf(state.getWallBits());
+        final var goals = BitSet.valueOf(state.getDestinationBits());
+        final var boxes = BitSet.valueOf(state.getBoxBits());
+        this.floor = new boolean[size];
+        this.goal = new boolean[size];
+        for (int cell = 0; cell < size; cell++) {
+            floor[cell] = !walls.get(cell) && state.getEntity(Position.of(cell % width, cell / width)) != null;
+            goal[cell] = goals.get(cell);
+        }
+        final var player = state.getPlayerPositionById(playerId);
+        assert player != null;
+        this.startPlayer = player.y() * width + player.x();
+        this.startBoxes = boxes.stream().toArray();
+
+        final var goalCells = goals.stream().toArray();
+        this.goalCount = goalCells.length;
+        this.pushDistances = new int[goalCount * size];
+        this.live = new boolean[size];
+        final var queue = new int[size];
+        for (int g = 0; g < goalCount; g++) {
+            final var base = g * size;
+            Arrays.fill(pushDistances, base, base + size, INFINITY);
+            pushDistances[base + goalCells[g]] = 0;
+            queue[0] = goalCells[g];
+            var head = 0;
+            var tail = 1;
+            // Pull the box away from the goal: a box at `to` came from `from` pushed by a player at `from - offset`.
+            while (head < tail) {
+                final var to = queue[head++];
+                live[to] = true;
+                for (final var offset : offsets) {
+                    final var from = to - offset;
+                    if (!floor[from] || !floor[from - offset] || pushDistances[base + from] != INFINITY)
+                        continue;
+                    pushDistances[base + from] = pushDistances[base + to] + 1;
+                    queue[tail++] = from;
+                }
+            }
+        }
+    }
+
+    int width() {
+        return width;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the id of the only player.
+     */
+    int playerId() {
+        return playerId;
+    }
+
+    /**
+     * @param direction a direction, indexing {@link #DIRECTIONS}.
+     * @return the difference of the cell indices of a cell and its neighbour in the direction.
+     */
+    int offset(int direction) {
+        return offsets[direction];
+    }
+
+    boolean isFloor(int cell) {
+        return floor[cell];
+    }
+
+    boolean isGoal(int cell) {
+        return goal[cell];
+    }
+
+    /**
+     * @param cell a cell.
+     * @return true if a box in the cell can be pushed to some goal when there are no other boxes.
+     */
+    boolean isLive(int cell) {
+        return live[cell];
+    }
+
+    int goalCount() {
+        return goalCount;
+    }
+
+    /**
+     * @param goal the index of a goal, in the order of cells.
+     * @param cell a cell.
+     * @return the number of pushes needed to move a box in the cell to the goal when there are no other boxes,
+     * or {@link #INFINITY} if it is impossible.
+     */
+    int pushDistance(int goal, int cell) {
+        return pushDistances[goal * size + cell];
+    }
+
+    int startPlayer() {
+        return startPlayer;
+    }
+
+    /**
+     * @return the cells of the boxes at the start, in ascending order.
+     */
+    int[] startBoxes() {
+        return startBoxes.clone();
+    }
+}
@@ -0,0 +1,133 @@
+package hk.ust.comp3021.solver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * The minimum-cost matching of boxes to goals by push distances, computed with the Hungarian algorithm.
+ * <p>
+ * Every box must be pushed to a distinct goal, and each push moves one box by one cell,
+ * so the cost of the matching never exceeds the number of pushes, nor the number of moves, still needed.
+ * It is therefore an admissible heuristic for both metrics of {@link Solver.Metric}.
+ * <p>
+ * An instance reuses its buffers and must be confined to one thread.
+ */
+final class Matching {
+
+    private final Level level;
+
+    private final int n;
+
+    /**
+     * Costs and potentials are longs, so that sums of {@link Level#INFINITY} do not overflow.
+     */
+    private final long[] cost;
+
+    private final long[] rowPotential;
+
+    private final long[] columnPotential;
+
+    /**
+     * The row matched with each column, 1-based with row 0 as the free row being added.
+     */
+    private final int[] columnRow;
+
+    private final int[] way;
+
+    private final long[] minSlack;
+
+    private final boolean[] used;
+
+    /**
+     * @param level the level whose boxes are matched with its goals.
+     */
+    Matching(@NotNull Level level) {
+        this.level = level;
+        this.n = level.goalCount();
+        this.cost = new long[n * n];
+        this.rowPotential = new long[n + 1];
+        this.columnPotential = new long[n + 1];
+        this.columnRow = new int[n + 1];
+        this.way = new int[n + 1];
+        this.minSlack = new long[n + 1];
+        this.used = new boolean[n + 1];
+    }
+
+    /**
+     * @param boxes the cells of boxes, as many as the goals.
+     * @param from  the index of the first box in the array.
+     * @return the cost of the minimum-cost matching, or {@link Level#INFINITY} if some box cannot reach any goal
+     * in a matching.
+     */
+    int cost(char @NotNull [] boxes, int from) {
+        var bound = 0;
+        for (int i = 0; i < n; i++) {
+            var nearest = Level.INFINITY;
+            for (int j = 0; j < n; j++) {
+                final var distance = level.pushDistance(j, boxes[from + i]);
+                cost[i * n + j] = distance;
+                nearest = Math.min(nearest, distance);
+            }
+            if (nearest == Level.INFINITY)
+                return Level.INFINITY;
+            bound += nearest;
+        }
+        if (n == 1)
+            return bound;
+        final var total = solve();
+        return total >= Level.INFINITY ? Level.INFINITY : (int) total;
+    }
+
+    /**
+     * The O(n^3) Hungarian algorithm with potentials, adding one row at a time along a shortest augmenting path.
+     */
+    private long solve() {
+        Arrays.fill(rowPotential, 0);
+        Arrays.fill(columnPotential, 0);
+        Arrays.fill(columnRow, 0);
+        for (int row = 1; row <= n; row++) {
+            columnRow[0] = row;
+            var column = 0;
+            Arrays.fill(minSlack, Long.MAX_VALUE);
+            Arrays.fill(used, false);
+            do {
+                used[column] = true;
+                final var currentRow = columnRow[column];
+                var delta = Long.MAX_VALUE;
+                var nextColumn = 0;
+                for (int j = 1; j <= n; j++) {
+                    if (used[j])
+                        continue;
+                    final var slack = cost[(currentRow - 1) * n + j - 1] - rowPotential[currentRow] - columnPotential[j];
+                    if (slack < minSlack[j]) {
+                        minSlack[j] = slack;
+                        way[j] = column;
+                    }
+                    if (minSlack[j] < delta) {
+                        delta = minSlack[j];
+                        nextColumn = j;
+                    }
+                }
+                for (int j = 0; j <= n; j++) {
+                    if (used[j]) {
+                        rowPotential[columnRow[j]] += delta;
+                        columnPotential[j] -= delta;
+                    } else {
+                        minSlack[j] -= delta;
+                    }
+                }
+                column = nextColumn;
+            } while (columnRow[column] != 0);
+            do {
+                final var previous = way[column];
+                columnRow[column] = columnRow[previous];
+                column = previous;
+            } while (column != 0);
+        }
+        var total = 0L;
+        for (int j = 1; j <= n; j++)
+            total += cost[(columnRow[j] - 1) * n + j - 1];
+        return total;
+    }
+}
@@ -0,0 +1,86 @@
+package hk.ust.comp3021.solver;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of node numbers ordered by their {@code f = cost + estimate}, breaking ties by smaller estimates,
+ * which prefers nodes closer to a goal.
+ * A node may be added again with a smaller cost; entries no longer matching their nodes are skipped by the search.
+ */
+final class NodeQueue {
+
+    private long[] priorities = new long[64];
+
+    private int[] nodes = new int[64];
+
+    private int size = 0;
+
+    /**
+     * @param cost     the cost of reaching the node.
+     * @param estimate the estimate of the remaining cost of the node.
+     * @return the priority of the node, smaller first.
+     */
+    static long priority(int cost, int estimate) {
+        return (long) (cost + estimate) << 32 | estimate;
+    }
+
+    /**
+     * @param node     the number of the node.
+     * @param priority the priority of the node, made by {@link #priority(int, int)}.
+     */
+    void add(int node, long priority) {
+        if (size == nodes.length) {
+            priorities = Arrays.copyOf(priorities, 2 * size);
+            nodes = Arrays.copyOf(nodes, 2 * size);
+        }
+        var i = size++;
+        while (i > 0) {
+            final var parent = (i - 1) >>> 1;
+            if (priorities[parent] <= priority)
+                break;
+            priorities[i] = priorities[parent];
+            nodes[i] = nodes[parent];
+            i = parent;
+        }
+        priorities[i] = priority;
+        nodes[i] = node;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the priority of the first node.
+     */
+    long peekPriority() {
+        return priorities[0];
+    }
+
+    /**
+     * Remove the first node.
+     *
+     * @return the number of the node.
+     */
+    int poll() {
+        final var first = nodes[0];
+        final var lastPriority = priorities[--size];
+        final var lastNode = nodes[size];
+        var i = 0;
+        while (true) {
+            var child = 2 * i + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && priorities[child + 1] < priorities[child])
+                child++;
+            if (priorities[child] >= lastPriority)
+                break;
+            priorities[i] = priorities[child];
+            nodes[i] = nodes[child];
+            i = child;
+        }
+        priorities[i] = lastPriority;
+        nodes[i] = lastNode;
+        return first;
+    }
+}
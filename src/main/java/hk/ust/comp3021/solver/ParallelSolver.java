@@ -0,0 +1,431 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.game.GameMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * An optimal solver of single-player maps, expanding nodes of the A* search of {@link Solver} in parallel
+ * on a work-stealing pool.
+ * <p>
+ * The search proceeds in waves.
+ * Between waves, the coordinating thread takes all queued nodes with the smallest {@code f = cost + estimate} off the queue
+ * and closes them.
+ * Since the estimate is consistent, the cost of each of these nodes is already optimal, and none of them can be improved
+ * by expanding the others, so they can be expanded in any order.
+ * The wave is split into tasks of a few nodes each, which the pool balances by work stealing.
+ * Workers store the successors in a shared table split into independently locked stripes (see {@link ConcurrentStateTable})
+ * and hand the successors to queue back to the coordinator, which queues them before the next wave.
+ * A solution thus has the same cost as that of {@link Solver} under the same metric, and only that cost is reproducible:
+ * of equally cheap paths to a state, the one stored first by a racing worker is kept,
+ * and nodes are numbered in the order workers add them,
+ * so the actions of a solution may differ between runs, and from those of {@link Solver}.
+ * <p>
+ * The pool is owned by the solver and may be used by many searches one after another; close the solver to shut it down.
+ * <p>
+ * Running this class validates level packs, solving every level of each pack and reporting the search speed
+ * (see {@link #main(String[])}).
+ */
+public class ParallelSolver implements AutoCloseable {
+
+    /**
+     * The maximum number of nodes expanded by one task without splitting.
+     */
+    private static final int GRAIN = 16;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a solver using all available processors.
+     */
+    public ParallelSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism The number of worker threads.
+     * @throws IllegalArgumentException if the parallelism is not positive.
+     */
+    public ParallelSolver(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * @return The number of worker threads.
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Find an optimal solution.
+     *
+     * @param gameMap The map to solve, which must have exactly one player.
+     * @param metric  The cost to minimize.
+     * @return The result of the search.
+     * @throws IllegalArgumentException if the map has more than one player or is too large.
+     */
+    public @NotNull Solver.Result solve(@NotNull GameMap gameMap, @NotNull Solver.Metric metric) {
+        return solve(gameMap, metric, Long.MAX_VALUE);
+    }
+
+    /**
+     * Find an optimal solution, expanding at most the given number of nodes.
+     *
+     * @param gameMap   The map to solve, which must have exactly one player.
+     * @param metric    The cost to minimize.
+     * @param nodeLimit The maximum number of nodes to expand.
+     * @return The result of the search.
+     * @throws IllegalArgumentException if the map has more than one player or is too large.
+     */
+    public @NotNull Solver.Result solve(@NotNull GameMap gameMap, @NotNull Solver.Metric metric, long nodeLimit) {
+        return new Search(new Level(gameMap), metric).run(nodeLimit);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Parse a level pack, which holds maps in the format of {@link GameMap#parse(String)} separated by blank lines.
+     *
+     * @param packText The content of the pack.
+     * @return The maps of the pack, in order.
+     * @throws IllegalArgumentException if a map is invalid.
+     */
+    public static @NotNull List<GameMap> parsePack(@NotNull String packText) {
+        return splitPack(packText).stream().map(GameMap::parse).toList();
+    }
+
+    /**
+     * @param packText The content of a level pack.
+     * @return The texts of the maps of the pack, in order.
+     */
+    private static @NotNull List<String> splitPack(@NotNull String packText) {
+        final var mapTexts = new ArrayList<String>();
+        final var mapText = new StringBuilder();
+        for (final var line : (packText + "\n").lines().toList()) {
+            if (!line.isBlank()) {
+                mapText.append(line).append('\n');
+            } else if (!mapText.isEmpty()) {
+                mapTexts.add(mapText.toString());
+                mapText.setLength(0);
+            }
+        }
+        if (!mapText.isEmpty())
+            mapTexts.add(mapText.toString());
+        return mapTexts;
+    }
+
+    /**
+     * Solve every level of the given packs, printing the result of each level and the total nodes per second.
+     * A pack that cannot be read and a level that cannot be parsed or solved are reported as failed and counted as unsolved,
+     * and the other levels are still solved.
+     *
+     * @param args The options {@code --pushes} to minimize pushes instead of moves,
+     *             {@code --threads=N} for the number of worker threads,
+     *             and {@code --nodes=N} for the maximum number of nodes expanded per level,
+     *             followed by the pack files.
+     */
+    public static void main(@NotNull String[] args) {
+        var metric = Solver.Metric.MOVES;
+        var threads = Runtime.getRuntime().availableProcessors();
+        var nodeLimit = Long.MAX_VALUE;
+        final var packFiles = new ArrayList<Path>();
+        try {
+            for (final var arg : args) {
+                if (arg.equals("--pushes"))
+                    metric = Solver.Metric.PUSHES;
+                else if (arg.startsWith("--threads="))
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                else if (arg.startsWith("--nodes="))
+                    nodeLimit = Long.parseLong(arg.substring("--nodes=".length()));
+                else if (arg.startsWith("--"))
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                else
+                    packFiles.add(Path.of(arg));
+            }
+        } catch (IllegalArgumentException e) {
+            packFiles.clear();
+        }
+        if (packFiles.isEmpty() || threads <= 0) {
+            System.out.println("Usage: java -cp Sokoban.jar hk.ust.comp3021.solver.ParallelSolver "
+                + "[--pushes] [--threads=N] [--nodes=N] <pack_file> ...");
+            System.exit(1);
+            return;
+        }
+
+        var solved = 0;
+        var levels = 0;
+        var expanded = 0L;
+        var elapsed = Duration.ZERO;
+        try (var solver = new ParallelSolver(threads)) {
+            for (final var packFile : packFiles) {
+                final List<String> mapTexts;
+                try {
+                    mapTexts = splitPack(Files.readString(packFile));
+                } catch (IOException e) {
+                    System.out.printf("%s: FAILED, %s%n", packFile, e);
+                    levels++;
+                    continue;
+                }
+                for (int i = 0; i < mapTexts.size(); i++) {
+                    levels++;
+                    final Solver.Result result;
+                    try {
+                        result = solver.solve(GameMap.parse(mapTexts.get(i)), metric, nodeLimit);
+                    } catch (IllegalArgumentException e) {
+                        System.out.printf("%s #%d: FAILED, %s%n", packFile, i + 1, e);
+                        continue;
+                    }
+                    final var solution = result.solution();
+                    System.out.printf("%s #%d: %s, %s, %d nodes, %.0f nodes/s%n", packFile, i + 1, result.status(),
+                        solution == null ? "no solution" : solution.moves() + " moves " + solution.pushes() + " pushes",
+                        result.expandedNodes(), result.nodesPerSecond());
+                    if (result.status() == Solver.Status.SOLVED)
+                        solved++;
+                    expanded += result.expandedNodes();
+                    elapsed = elapsed.plus(result.elapsed());
+                }
+            }
+        }
+        final var nanos = elapsed.toNanos();
+        System.out.printf("Solved %d of %d levels, %d nodes in %d ms, %.0f nodes/s%n",
+            solved, levels, expanded, elapsed.toMillis(), nanos == 0 ? 0 : expanded * 1e9 / nanos);
+        if (solved < levels)
+            System.exit(1);
+    }
+
+    /**
+     * The state of one search.
+     */
+    private final class Search {
+
+        private final Level level;
+
+        private final Expander expander;
+
+        /**
+         * Expanders not used by any task, so that each worker reuses one instead of allocating one per task.
+         * They belong to this search, and are dropped with it.
+         */
+        private final ConcurrentLinkedQueue<Expander> idleExpanders = new ConcurrentLinkedQueue<>();
+
+        private final Solver.Metric metric;
+
+        private final ConcurrentStateTable table;
+
+        private final NodeQueue queue = new NodeQueue();
+
+        private final int keyLength;
+
+        Search(@NotNull Level level, @NotNull Solver.Metric metric) {
+            this.level = level;
+            this.expander = new Expander(level, metric);
+            this.metric = metric;
+            this.table = new ConcurrentStateTable(expander.keyLength());
+            this.keyLength = expander.keyLength();
+        }
+
+        @NotNull Solver.Result run(long nodeLimit) {
+            final var start = System.nanoTime();
+            final var key = expander.rootKey();
+            final var rootEstimate = expander.estimate(key);
+            final var root = table.addRoot(key, rootEstimate, level.startPlayer());
+            if (rootEstimate < Level.INFINITY)
+                queue.add(root, NodeQueue.priority(0, rootEstimate));
+
+            var expanded = 0L;
+            final var wave = new Wave(keyLength);
+            while (!queue.isEmpty()) {
+                final var f = queue.peekPriority() >>> 32;
+                wave.clear();
+                while (!queue.isEmpty() && queue.peekPriority() >>> 32 == f) {
+                    final var priority = queue.peekPriority();
+                    final var node = queue.poll();
+                    if (table.isClosed(node) || priority != NodeQueue.priority(table.cost(node), table.estimate(node)))
+                        continue;
+                    table.close(node);
+                    table.key(node, key);
+                    if (table.estimate(node) == 0 && expander.isSolved(key)) {
+                        final var solution = table.solution(level, expander, node);
+                        return result(Solver.Status.SOLVED, solution, expanded, start);
+                    }
+                    wave.add(node, key, table.cost(node), table.player(node));
+                }
+                if (wave.size == 0)
+                    continue;
+                if (expanded == nodeLimit)
+                    return result(Solver.Status.NODE_LIMIT, null, expanded, start);
+                final var count = (int) Math.min(wave.size, nodeLimit - expanded);
+                expanded += count;
+                final var task = new ExpandTask(wave, 0, count);
+                final var successors = count <= GRAIN ? task.compute() : pool.invoke(task);
+                if (count < wave.size)
+                    return result(Solver.Status.NODE_LIMIT, null, expanded, start);
+                for (var batch = successors; batch != null; batch = batch.next) {
+                    for (int i = 0; i < batch.size; i++) {
+                        final var node = batch.nodes[i];
+                        queue.add(node, NodeQueue.priority(batch.costs[i], table.estimate(node)));
+                    }
+                }
+            }
+            return result(Solver.Status.UNSOLVABLE, null, expanded, start);
+        }
+
+        private @NotNull Solver.Result result(@NotNull Solver.Status status, @Nullable Solution solution, long expanded, long start) {
+            return new Solver.Result(status, solution, expanded, table.size(), Duration.ofNanos(System.nanoTime() - start));
+        }
+
+        /**
+         * The expansion of a range of the nodes of a wave.
+         */
+        private final class ExpandTask extends RecursiveTask<Batch> {
+
+            @Serial
+            private static final long serialVersionUID = 1L;
+
+            private final Wave wave;
+
+            private final int from;
+
+            private final int to;
+
+            ExpandTask(@NotNull Wave wave, int from, int to) {
+                this.wave = wave;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected @Nullable Batch compute() {
+                if (to - from > GRAIN) {
+                    final var middle = (from + to) >>> 1;
+                    final var right = new ExpandTask(wave, middle, to);
+                    right.fork();
+                    final var left = new ExpandTask(wave, from, middle).compute();
+                    return Batch.concat(left, right.join());
+                }
+                final var idle = idleExpanders.poll();
+                final var expander = idle != null ? idle : new Expander(level, metric);
+                try {
+                    return expand(expander);
+                } finally {
+                    idleExpanders.offer(expander);
+                }
+            }
+
+            private @Nullable Batch expand(@NotNull Expander expander) {
+                final var key = new char[keyLength];
+                final var batch = new Batch();
+                for (int i = from; i < to; i++) {
+                    final var node = wave.nodes[i];
+                    final var cost = wave.costs[i];
+                    System.arraycopy(wave.keys, i * keyLength, key, 0, keyLength);
+                    expander.expand(key, wave.players[i], (childKey, pushCost, push, player) -> {
+                        final var hash = StateTable.hash(childKey);
+                        final var childCost = cost + pushCost;
+                        var child = table.improve(childKey, hash, node, childCost, push, player);
+                        if (child == ConcurrentStateTable.ABSENT) {
+                            final var estimate = expander.estimate(childKey);
+                            child = table.add(childKey, hash, node, childCost, estimate, push, player);
+                        }
+                        if (child >= 0)
+                            batch.add(child, childCost);
+                    });
+                }
+                return batch.size == 0 ? null : batch;
+            }
+        }
+    }
+
+    /**
+     * The nodes of a wave, with the data needed to expand them copied out of the table,
+     * since workers cannot read the table without locking.
+     */
+    private static final class Wave {
+
+        private final int keyLength;
+
+        private int[] nodes = new int[16];
+
+        private int[] costs = new int[16];
+
+        private int[] players = new int[16];
+
+        private char[] keys;
+
+        private int size = 0;
+
+        Wave(int keyLength) {
+            this.keyLength = keyLength;
+            this.keys = new char[16 * keyLength];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(int node, char @NotNull [] key, int cost, int player) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * size);
+                costs = Arrays.copyOf(costs, 2 * size);
+                players = Arrays.copyOf(players, 2 * size);
+                keys = Arrays.copyOf(keys, 2 * size * keyLength);
+            }
+            nodes[size] = node;
+            costs[size] = cost;
+            players[size] = player;
+            System.arraycopy(key, 0, keys, size * keyLength, keyLength);
+            size++;
+        }
+    }
+
+    /**
+     * The successors to queue found by a task with their costs, linked to those of other tasks.
+     * The coordinator reads their estimates from the table when queueing them.
+     */
+    private static final class Batch {
+
+        private int[] nodes = new int[64];
+
+        private int[] costs = new int[64];
+
+        private int size = 0;
+
+        private @Nullable Batch next;
+
+        static @Nullable Batch concat(@Nullable Batch first, @Nullable Batch second) {
+            if (first == null)
+                return second;
+            var last = first;
+            while (last.next != null)
+                last = last.next;
+            last.next = second;
+            return first;
+        }
+
+        void add(int node, int cost) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * size);
+                costs = Arrays.copyOf(costs, 2 * size);
+            }
+            nodes[size] = node;
+            costs[size] = cost;
+            size++;
+        }
+    }
+}
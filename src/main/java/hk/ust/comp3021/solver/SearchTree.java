@@ -0,0 +1,65 @@
+package hk.ust.comp3021.solver;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The nodes of a search, linked to their parents, from which solutions are rebuilt.
+ */
+interface SearchTree {
+
+    /**
+     * @param node the number of a node.
+     * @return the number of the node it is reached from, or -1 for the root.
+     */
+    int parent(int node);
+
+    /**
+     * @param node the number of a node.
+     * @param into the array to copy the key of the node into.
+     */
+    void key(int node, char @NotNull [] into);
+
+    /**
+     * @param node the number of a node.
+     * @return the push reaching it from the parent, see {@link Expander#push(int, int)}.
+     */
+    int push(int node);
+
+    /**
+     * @param node the number of a node.
+     * @return the cell of the player after the push.
+     */
+    int player(int node);
+
+    /**
+     * Rebuild the moves of the player from the root to a node, walking to each box before pushing it.
+     *
+     * @param level    the level searched.
+     * @param expander an expander of the level, used to find the walks.
+     * @param node     the number of the node.
+     * @return the solution reaching the node.
+     */
+    default @NotNull Solution solution(@NotNull Level level, @NotNull Expander expander, int node) {
+        var length = 0;
+        for (int n = node; parent(n) >= 0; n = parent(n))
+            length++;
+        final var path = new int[length];
+        for (int n = node, i = length - 1; i >= 0; n = parent(n), i--)
+            path[i] = n;
+
+        final var actions = new StringBuilder();
+        final var parentKey = new char[expander.keyLength()];
+        for (final var n : path) {
+            final var parent = parent(n);
+            key(parent, parentKey);
+            final var push = push(n);
+            final var direction = Expander.pushDirection(push);
+            final var behind = Expander.pushedBox(push) - level.offset(direction);
+            final var walk = expander.walk(parentKey, player(parent), behind);
+            if (walk == null)
+                throw new IllegalStateException("The player cannot walk to the box pushed");
+            actions.append(walk).append(Level.DIRECTIONS.charAt(direction));
+        }
+        return new Solution(level.playerId(), actions.toString(), length);
+    }
+}
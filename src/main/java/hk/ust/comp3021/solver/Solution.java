@@ -0,0 +1,66 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.actions.Move;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A solution of a single-player map.
+ *
+ * @param playerId The id of the player.
+ * @param actions  The moves of the player, one character of {@code HJKL} per move as in action files.
+ * @param pushes   The number of moves pushing a box.
+ */
+public record Solution(int playerId, @NotNull String actions, int pushes) {
+
+    /**
+     * @return The number of moves.
+     */
+    public int moves() {
+        return actions.length();
+    }
+
+    /**
+     * @return The moves of the player.
+     */
+    public @NotNull List<Move> toMoves() {
+        final var moves = new ArrayList<Move>(actions.length());
+        for (int i = 0; i < actions.length(); i++) {
+            moves.add(switch (actions.charAt(i)) {
+                case 'H' -> new Move.Left(playerId);
+                case 'J' -> new Move.Down(playerId);
+                case 'K' -> new Move.Up(playerId);
+                case 'L' -> new Move.Right(playerId);
+                default -> throw new IllegalStateException("Invalid action: " + actions.charAt(i));
+            });
+        }
+        return moves;
+    }
+
+    /**
+     * @return The content of an action file replaying this solution,
+     * i.e. the player id in the first line followed by one move per line.
+     */
+    public @NotNull String toActionFile() {
+        final var builder = new StringBuilder(2 * actions.length() + 4);
+        builder.append(playerId).append('\n');
+        for (int i = 0; i < actions.length(); i++)
+            builder.append(actions.charAt(i)).append('\n');
+        return builder.toString();
+    }
+
+    /**
+     * Write an action file replaying this solution.
+     *
+     * @param actionFile The action file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(@NotNull Path actionFile) throws IOException {
+        Files.writeString(actionFile, toActionFile());
+    }
+}
@@ -0,0 +1,159 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.game.GameMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.BitSet;
+
+/**
+ * An optimal solver of single-player maps, using A* search over pushes.
+ * <p>
+ * Each node of the search is the state after a push, and its successors are the states after the next push
+ * (see {@link Expander}).
+ * The estimate of a node is the cost of the minimum-cost matching of boxes to goals by push distances
+ * (see {@link Matching}), which is admissible and consistent for both metrics, so the first solved state taken
+ * from the queue is optimal.
+ * Visited states are stored by compact keys in a hash table (see {@link StateTable}).
+ * <p>
+ * A solver may be used by many threads; each call of {@link Solver#solve(Metric)} runs an independent search.
+ */
+public class Solver {
+
+    /**
+     * The cost to minimize.
+     */
+    public enum Metric {
+        /**
+         * The number of moves of the player, including pushes.
+         */
+        MOVES,
+
+        /**
+         * The number of pushes of boxes.
+         */
+        PUSHES,
+    }
+
+    /**
+     * The outcome of a search.
+     */
+    public enum Status {
+        /**
+         * An optimal solution was found.
+         */
+        SOLVED,
+
+        /**
+         * The whole state space was searched without solving the map.
+         */
+        UNSOLVABLE,
+
+        /**
+         * The search stopped after expanding the maximum number of nodes.
+         */
+        NODE_LIMIT,
+    }
+
+    /**
+     * The result of a search.
+     *
+     * @param status        The outcome of the search.
+     * @param solution      The optimal solution, or null if not {@link Status#SOLVED}.
+     * @param expandedNodes The number of nodes expanded.
+     * @param storedNodes   The number of distinct states stored.
+     * @param elapsed       The time taken by the search.
+     */
+    public record Result(
+        @NotNull Status status,
+        @Nullable Solution solution,
+        long expandedNodes,
+        long storedNodes,
+        @NotNull Duration elapsed
+    ) {
+        /**
+         * @return The number of nodes expanded per second.
+         */
+        public double nodesPerSecond() {
+            final var nanos = elapsed.toNanos();
+            return nanos == 0 ? 0 : expandedNodes * 1e9 / nanos;
+        }
+    }
+
+    private final Level level;
+
+    /**
+     * @param gameMap The map to solve, which must have exactly one player.
+     * @throws IllegalArgumentException if the map has more than one player or is too large.
+     */
+    public Solver(@NotNull GameMap gameMap) {
+        this.level = new Level(gameMap);
+    }
+
+    /**
+     * Find an optimal solution.
+     *
+     * @param metric The cost to minimize.
+     * @return The result of the search.
+     */
+    public @NotNull Result solve(@NotNull Metric metric) {
+        return solve(metric, Long.MAX_VALUE);
+    }
+
+    /**
+     * Find an optimal solution, expanding at most the given number of nodes.
+     *
+     * @param metric    The cost to minimize.
+     * @param nodeLimit The maximum number of nodes to expand.
+     * @return The result of the search.
+     */
+    public @NotNull Result solve(@NotNull Metric metric, long nodeLimit) {
+        final var start = System.nanoTime();
+        final var expander = new Expander(level, metric);
+        final var table = new StateTable(expander.keyLength());
+        final var queue = new NodeQueue();
+        final var closed = new BitSet();
+        final var key = expander.rootKey();
+        final var rootEstimate = expander.estimate(key);
+        final var root = ~table.findOrAdd(key);
+        table.set(root, -1, 0, rootEstimate, -1, level.startPlayer());
+        if (rootEstimate < Level.INFINITY)
+            queue.add(root, NodeQueue.priority(0, rootEstimate));
+
+        var expanded = 0L;
+        while (!queue.isEmpty()) {
+            final var priority = queue.peekPriority();
+            final var node = queue.poll();
+            if (closed.get(node) || priority != NodeQueue.priority(table.cost(node), table.estimate(node)))
+                continue;
+            closed.set(node);
+            table.key(node, key);
+            if (expander.isSolved(key)) {
+                final var solution = table.solution(level, expander, node);
+                return new Result(Status.SOLVED, solution, expanded, table.size(), Duration.ofNanos(System.nanoTime() - start));
+            }
+            if (expanded == nodeLimit)
+                return new Result(Status.NODE_LIMIT, null, expanded, table.size(), Duration.ofNanos(System.nanoTime() - start));
+            expanded++;
+            final var cost = table.cost(node);
+            expander.expand(key, table.player(node), (childKey, pushCost, push, player) -> {
+                final var found = table.findOrAdd(childKey);
+                final var childCost = cost + pushCost;
+                if (found >= 0) {
+                    if (closed.get(found) || childCost >= table.cost(found))
+                        return;
+                    table.set(found, node, childCost, table.estimate(found), push, player);
+                    queue.add(found, NodeQueue.priority(childCost, table.estimate(found)));
+                    return;
+                }
+                final var child = ~found;
+                final var estimate = expander.estimate(childKey);
+                table.set(child, node, childCost, estimate, push, player);
+                if (estimate < Level.INFINITY)
+                    queue.add(child, NodeQueue.priority(childCost, estimate));
+            });
+        }
+        return new Result(Status.UNSOLVABLE, null, expanded, table.size(), Duration.ofNanos(System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,199 @@
+package hk.ust.comp3021.solver;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * The nodes of a search, indexed by their compact keys in an open-addressing hash table.
+ * <p>
+ * A key is a {@code char[]} holding the player cell followed by the box cells in ascending order
+ * (see {@link Expander}), and all keys are stored back to back in one array.
+ * Nodes are numbered from 0 in the order of insertion, and their search data is kept in parallel primitive arrays,
+ * so a node costs a few dozen bytes and no objects.
+ * <p>
+ * A table must be confined to one thread.
+ */
+final class StateTable implements SearchTree {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final int keyLength;
+
+    private char[] keys;
+
+    private int[] hashes;
+
+    /**
+     * Open-addressing slots holding node numbers plus one, or 0 if empty. The length is a power of two.
+     */
+    private int[] slots;
+
+    private int size = 0;
+
+    private int[] parents;
+
+    private int[] costs;
+
+    private int[] estimates;
+
+    private int[] pushes;
+
+    private int[] players;
+
+    /**
+     * @param keyLength the length of keys.
+     */
+    StateTable(int keyLength) {
+        this.keyLength = keyLength;
+        this.keys = new char[INITIAL_CAPACITY * keyLength];
+        this.hashes = new int[INITIAL_CAPACITY];
+        this.slots = new int[2 * INITIAL_CAPACITY];
+        this.parents = new int[INITIAL_CAPACITY];
+        this.costs = new int[INITIAL_CAPACITY];
+        this.estimates = new int[INITIAL_CAPACITY];
+        this.pushes = new int[INITIAL_CAPACITY];
+        this.players = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @param key a key.
+     * @return the hash of the key.
+     */
+    static int hash(char @NotNull [] key) {
+        var h = 0x9e3779b9;
+        for (final var c : key)
+            h = (h ^ c) * 0x01000193;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+
+    /**
+     * Find the node of a key, adding a node if there is none.
+     * The search data of a new node is undefined until set.
+     *
+     * @param key the key, which is copied into the table.
+     * @return the number of the node if it exists, or the bitwise complement ({@code ~}) of the number of the new node.
+     */
+    int findOrAdd(char @NotNull [] key) {
+        return findOrAdd(key, hash(key));
+    }
+
+    /**
+     * @param key  the key, which is copied into the table.
+     * @param hash the hash of the key, computed by {@link #hash(char[])}.
+     * @return the same as {@link #findOrAdd(char[])}.
+     */
+    int findOrAdd(char @NotNull [] key, int hash) {
+        final var slot = slot(key, hash);
+        if (slots[slot] != 0)
+            return slots[slot] - 1;
+        if (size == hashes.length) {
+            grow();
+            return findOrAdd(key, hash);
+        }
+        final var node = size++;
+        System.arraycopy(key, 0, keys, node * keyLength, keyLength);
+        hashes[node] = hash;
+        slots[slot] = node + 1;
+        return ~node;
+    }
+
+    /**
+     * @param key  a key.
+     * @param hash the hash of the key, computed by {@link #hash(char[])}.
+     * @return the number of the node of the key, or -1 if there is none.
+     */
+    int find(char @NotNull [] key, int hash) {
+        return slots[slot(key, hash)] - 1;
+    }
+
+    /**
+     * @return the slot holding the node of a key, or the empty slot ending its probe sequence.
+     */
+    private int slot(char @NotNull [] key, int hash) {
+        var slot = hash & (slots.length - 1);
+        while (slots[slot] != 0) {
+            final var node = slots[slot] - 1;
+            if (hashes[node] == hash && Arrays.equals(keys, node * keyLength, (node + 1) * keyLength, key, 0, keyLength))
+                return slot;
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        return slot;
+    }
+
+    /**
+     * Double the capacity, keeping the load factor of the slots at most one half.
+     */
+    private void grow() {
+        final var capacity = 2 * hashes.length;
+        keys = Arrays.copyOf(keys, capacity * keyLength);
+        hashes = Arrays.copyOf(hashes, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        costs = Arrays.copyOf(costs, capacity);
+        estimates = Arrays.copyOf(estimates, capacity);
+        pushes = Arrays.copyOf(pushes, capacity);
+        players = Arrays.copyOf(players, capacity);
+        slots = new int[2 * capacity];
+        for (int node = 0; node < size; node++) {
+            var slot = hashes[node] & (slots.length - 1);
+            while (slots[slot] != 0)
+                slot = (slot + 1) & (slots.length - 1);
+            slots[slot] = node + 1;
+        }
+    }
+
+    /**
+     * @return the number of nodes.
+     */
+    int size() {
+        return size;
+    }
+
+    @Override
+    public void key(int node, char @NotNull [] into) {
+        System.arraycopy(keys, node * keyLength, into, 0, keyLength);
+    }
+
+    /**
+     * Set the search data of a node.
+     *
+     * @param node     the number of the node.
+     * @param parent   the number of the node it is reached from, or -1 for the root.
+     * @param cost     the cost of reaching it from the root.
+     * @param estimate the heuristic estimate of the cost of reaching a goal from it.
+     * @param push     the push reaching it from the parent, see {@link Expander#push(int, int)}.
+     * @param player   the cell of the player after the push.
+     */
+    void set(int node, int parent, int cost, int estimate, int push, int player) {
+        parents[node] = parent;
+        costs[node] = cost;
+        estimates[node] = estimate;
+        pushes[node] = push;
+        players[node] = player;
+    }
+
+    @Override
+    public int parent(int node) {
+        return parents[node];
+    }
+
+    int cost(int node) {
+        return costs[node];
+    }
+
+    int estimate(int node) {
+        return estimates[node];
+    }
+
+    @Override
+    public int push(int node) {
+        return pushes[node];
+    }
+
+    @Override
+    public int player(int node) {
+        return players[node];
+    }
+}
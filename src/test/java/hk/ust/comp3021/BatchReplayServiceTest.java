@@ -0,0 +1,191 @@
+package hk.ust.comp3021;
+
+import hk.ust.comp3021.replay.BinaryActionLog;
+import hk.ust.comp3021.replay.ReplaySokobanGame;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@ExtendWith(TestExtension.class)
+class BatchReplayServiceTest {
+
+    private static final ReplaySokobanGame.Options HEADLESS =
+        ReplaySokobanGame.Options.DEFAULT.withRenderMode(ReplaySokobanGame.RenderMode.NONE);
+
+    @TempDir
+    private Path tempDir;
+
+    private Path mapFile;
+
+    private Path winningFile;
+
+    private Path losingFile;
+
+    @BeforeEach
+    void writeFiles() throws IOException {
+        mapFile = tempDir.resolve("map.map");
+        Files.writeString(mapFile, """
+            233
+            #####
+            #Aa@#
+            #####
+            """);
+        winningFile = tempDir.resolve("win.txt");
+        Files.writeString(winningFile, "0\nL\nL\n");
+        losingFile = tempDir.resolve("lose.txt");
+        Files.writeString(losingFile, "0\nH\nU\nK\n");
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testMapParsedOnce() throws IOException {
+        try (var service = new BatchReplayService(2)) {
+            final var gameMap = service.loadMap(mapFile);
+            assertSame(gameMap, service.loadMap(mapFile));
+            assertSame(gameMap, service.loadMap(tempDir.resolve(".").resolve("map.map")));
+        }
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testReplay() throws IOException, InterruptedException {
+        final var job = new BatchReplayService.Job(mapFile, ReplaySokobanGame.Mode.ROUND_ROBIN, 60, List.of(winningFile),
+            HEADLESS, SokobanGameFactory.InputKind.STREAM);
+        try (var service = new BatchReplayService(2)) {
+            final var summary = service.replay(job, 8);
+
+            assertEquals(8, summary.results().size());
+            assertEquals(8, summary.wins());
+            assertEquals(0, summary.failures());
+            // The game ends with the first move winning it.
+            assertEquals(8, summary.steps());
+            for (int i = 0; i < 8; i++) {
+                final var result = summary.results().get(i);
+                assertEquals(i, result.index());
+                assertTrue(result.win());
+                assertNull(result.failure());
+            }
+        }
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testReplayOnThreadFactory() throws IOException, InterruptedException {
+        final var repeat = Runtime.getRuntime().availableProcessors() + 2;
+        final var job = new BatchReplayService.Job(mapFile, ReplaySokobanGame.Mode.ROUND_ROBIN, 60, List.of(winningFile),
+            HEADLESS, SokobanGameFactory.InputKind.STREAM);
+        // Every thread waits for all others before running its game, so the games can only finish if all run at once.
+        final var started = new CountDownLatch(repeat);
+        final var threads = new AtomicInteger();
+        final ThreadFactory threadFactory = runnable -> {
+            threads.incrementAndGet();
+            return new Thread(() -> {
+                started.countDown();
+                try {
+                    started.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                runnable.run();
+            });
+        };
+        try (var service = new BatchReplayService(threadFactory)) {
+            final var summary = service.replay(job, repeat);
+
+            assertEquals(repeat, summary.wins());
+            assertEquals(repeat, threads.get());
+        }
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testReplayAll() throws IOException, InterruptedException {
+        final var jobs = List.of(
+            new BatchReplayService.Job(mapFile, ReplaySokobanGame.Mode.FREE_RACE, 60, List.of(losingFile),
+                HEADLESS, SokobanGameFactory.InputKind.CHANNEL),
+            new BatchReplayService.Job(mapFile, ReplaySokobanGame.Mode.ROUND_ROBIN, 60, List.of(tempDir.resolve("missing.txt")),
+                HEADLESS, SokobanGameFactory.InputKind.STREAM),
+            new BatchReplayService.Job(mapFile, ReplaySokobanGame.Mode.ROUND_ROBIN, 60, List.of(winningFile),
+                HEADLESS, SokobanGameFactory.InputKind.STREAM)
+        );
+        try (var service = new BatchReplayService()) {
+            final var summary = service.replayAll(jobs);
+
+            assertEquals(1, summary.wins());
+            assertEquals(1, summary.failures());
+            assertEquals(3 + 1, summary.steps());
+            final var lost = summary.results().get(0);
+            assertFalse(lost.win());
+            assertEquals(3, lost.steps());
+            final var failed = summary.results().get(1);
+            assertFalse(failed.win());
+            assertTrue(failed.failure() instanceof UncheckedIOException);
+            assertTrue(failed.failure().getCause() instanceof IOException);
+            assertTrue(summary.results().get(2).win());
+        }
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @EnumSource(SokobanGameFactory.InputKind.class)
+    void testCloseActionFiles(SokobanGameFactory.InputKind inputKind) throws IOException, InterruptedException {
+        final var openFiles = Path.of("/proc/self/fd");
+        assumeTrue(Files.isDirectory(openFiles));
+        final var actionFile = tempDir.resolve("actions");
+        if (inputKind == SokobanGameFactory.InputKind.BINARY) {
+            BinaryActionLog.convert(winningFile, actionFile, BinaryActionLog.Encoding.NIBBLE);
+        } else {
+            // The game is won before the end of the file is reached.
+            Files.writeString(actionFile, "0\nL\nL\n".repeat(1000));
+        }
+        final var job = new BatchReplayService.Job(mapFile, ReplaySokobanGame.Mode.ROUND_ROBIN, 60, List.of(actionFile),
+            HEADLESS, inputKind);
+        try (var service = new BatchReplayService(2)) {
+            service.loadMap(mapFile);
+            final var before = countFiles(openFiles);
+            assertEquals(16, service.replay(job, 16).wins());
+            assertTrue(countFiles(openFiles) < before + 16);
+        }
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testMissingMap() {
+        final var job = new BatchReplayService.Job(tempDir.resolve("missing.map"), ReplaySokobanGame.Mode.ROUND_ROBIN, 60,
+            List.of(winningFile), HEADLESS, SokobanGameFactory.InputKind.STREAM);
+        try (var service = new BatchReplayService(1)) {
+            assertThrows(NoSuchFileException.class, () -> service.replay(job, 2));
+        }
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testInvalidParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> new BatchReplayService(0));
+    }
+
+    private static long countFiles(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
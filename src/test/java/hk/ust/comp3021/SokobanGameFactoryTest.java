@@ -1,17 +1,30 @@
 package hk.ust.comp3021;
 
+import hk.ust.comp3021.actions.Exit;
+import hk.ust.comp3021.actions.Move;
+import hk.ust.comp3021.actions.Undo;
+import hk.ust.comp3021.replay.BinaryActionLog;
+import hk.ust.comp3021.replay.ReplaySokobanGame;
 import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestHelper;
 import hk.ust.comp3021.utils.TestKind;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 @ExtendWith(TestExtension.class)
 class SokobanGameFactoryTest {
@@ -39,4 +52,60 @@ class SokobanGameFactoryTest {
         assertEquals(7, gameMap.getMaxHeight());
         assertEquals(233, gameMap.getUndoLimit().orElse(null));
     }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testCloseOpenedFilesOnFailure() throws IOException {
+        final var openFiles = Path.of("/proc/self/fd");
+        assumeTrue(Files.isDirectory(openFiles));
+        final var gameMap = TestHelper.parseGameMap("""
+            233
+            #####
+            #Aa@#
+            #####
+            """);
+        final var textFile = tempDir.resolve("actions.txt");
+        Files.writeString(textFile, "0\nL\n");
+        final var binaryFile = tempDir.resolve("actions.bin");
+        BinaryActionLog.convert(textFile, binaryFile, BinaryActionLog.Encoding.NIBBLE);
+
+        final var before = countFiles(openFiles);
+        for (final var inputKind : SokobanGameFactory.InputKind.values()) {
+            // The last action file is missing, or is not a binary action log.
+            final var actionFiles = inputKind == SokobanGameFactory.InputKind.BINARY
+                ? new String[]{binaryFile.toString(), binaryFile.toString(), textFile.toString()}
+                : new String[]{textFile.toString(), textFile.toString(), tempDir.resolve("missing.txt").toString()};
+            final var failure = assertThrows(Exception.class, () -> SokobanGameFactory.createReplayGame(gameMap,
+                ReplaySokobanGame.Mode.ROUND_ROBIN, 60, actionFiles, ReplaySokobanGame.Options.DEFAULT, inputKind));
+            assertTrue(failure instanceof IOException || failure instanceof IllegalArgumentException);
+        }
+        assertEquals(before, countFiles(openFiles));
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @EnumSource(SokobanGameFactory.InputKind.class)
+    void testCreateInputEngine(SokobanGameFactory.InputKind inputKind) throws IOException {
+        var actionFile = tempDir.resolve("actions.txt");
+        Files.writeString(actionFile, "1\nH\nJ\nx\nU\n");
+        if (inputKind == SokobanGameFactory.InputKind.BINARY) {
+            final var textFile = actionFile;
+            actionFile = tempDir.resolve("actions.bin");
+            BinaryActionLog.convert(textFile, actionFile, BinaryActionLog.Encoding.NIBBLE);
+        }
+        final var inputEngine = SokobanGameFactory.createInputEngine(actionFile, inputKind);
+
+        final var actions = new ArrayList<String>();
+        for (var action = inputEngine.fetchAction(); !(action instanceof Exit); action = inputEngine.fetchAction()) {
+            assertEquals(1, action.getInitiator());
+            actions.add(action.toString());
+        }
+        assertEquals(List.of(new Move.Left(1).toString(), new Move.Down(1).toString(), new Undo(1).toString()), actions);
+    }
+
+    private static long countFiles(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.count();
+        }
+    }
 }
@@ -49,4 +49,14 @@ class MoveTest {
                 new Move.Down(-1).nextPosition(pos)
         );
     }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void movePacked() {
+        final var packed = pos.pack();
+        assertEquals(Position.pack(232, 233), new Move.Left(-1).nextPosition(packed));
+        assertEquals(Position.pack(234, 233), new Move.Right(-1).nextPosition(packed));
+        assertEquals(Position.pack(233, 232), new Move.Up(-1).nextPosition(packed));
+        assertEquals(Position.pack(233, 234), new Move.Down(-1).nextPosition(packed));
+    }
 }
@@ -0,0 +1,96 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.entities.Box;
+import hk.ust.comp3021.entities.Empty;
+import hk.ust.comp3021.entities.Player;
+import hk.ust.comp3021.entities.Wall;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestHelper;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class BoardTemplateTest {
+
+    private static final String MAP = """
+        1
+        #######
+        #.Aa@.#
+        #.B..b#
+        #@....#
+        #######
+        """;
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testCompiled() {
+        final var gameMap = TestHelper.parseGameMap(MAP);
+        final var template = gameMap.getTemplate();
+
+        assertSame(template, gameMap.getTemplate());
+        assertEquals(7, template.getMaxWidth());
+        assertEquals(5, template.getMaxHeight());
+        assertEquals(Optional.of(1), template.getUndoLimit());
+        assertEquals(Set.of(Position.of(4, 1), Position.of(1, 3)), template.getDestinations());
+        assertTrue(template.isWall(Position.of(0, 0)));
+        assertTrue(template.isWall(Position.of(6, 4)));
+        assertFalse(template.isWall(Position.of(2, 1)));
+        assertFalse(template.isWall(Position.of(7, 0)));
+        assertTrue(template.isDestination(Position.of(4, 1)));
+        assertFalse(template.isDestination(Position.of(3, 1)));
+        assertFalse(template.isDestination(Position.of(-1, 1)));
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @EnumSource(GameState.Backend.class)
+    void testGameStates(GameState.Backend backend) {
+        final var gameMap = TestHelper.parseGameMap(MAP);
+        final var template = gameMap.getTemplate();
+        final var first = new GameState(template, backend);
+        final var second = new GameState(template, backend);
+
+        assertEquals(first, second);
+        assertEquals(new GameState(gameMap, GameState.Backend.MAP).zobristKey(), first.zobristKey());
+        assertEquals(Position.of(2, 1), first.getPlayerPositionById(0));
+        assertEquals(Position.of(2, 2), first.getPlayerPositionById(1));
+        assertEquals(Wall.INSTANCE, first.getEntity(Position.of(0, 0)));
+        assertEquals(Box.of(1), first.getEntity(Position.of(5, 2)));
+        assertEquals(Optional.of(1), first.getUndoQuota());
+        assertFalse(first.isWin());
+
+        first.move(Position.of(3, 1), Position.of(4, 1));
+        first.move(Position.of(2, 1), Position.of(3, 1));
+        assertEquals(Player.of(0), first.getEntity(Position.of(3, 1)));
+        assertEquals(Empty.INSTANCE, second.getEntity(Position.of(4, 1)));
+        assertEquals(Player.of(0), second.getEntity(Position.of(2, 1)));
+        assertNotEquals(first, second);
+        assertEquals(second, new GameState(template, backend));
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testPutEntityDiscardsTemplate() {
+        final var gameMap = new GameMap(3, 1, Set.of(Position.of(2, 0)), -1);
+        gameMap.putEntity(Position.of(0, 0), Player.of(0));
+        gameMap.putEntity(Position.of(1, 0), Box.of(0));
+        final var template = gameMap.getTemplate();
+        assertFalse(new GameState(template).isWin());
+
+        gameMap.putEntity(Position.of(1, 0), Empty.INSTANCE);
+        gameMap.putEntity(Position.of(2, 0), Box.of(0));
+        assertNotSame(template, gameMap.getTemplate());
+        assertTrue(new GameState(gameMap).isWin());
+        assertEquals(Box.of(0), new GameState(template).getEntity(Position.of(1, 0)));
+        assertEquals(Optional.empty(), gameMap.getTemplate().getUndoLimit());
+    }
+}
@@ -53,6 +53,17 @@ class GameMapTest {
         assertInstanceOf(Empty.class, gameMap.getEntity(Position.of(4, 1)));
     }
 
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testSharedEntities() {
+        final var gameMap = TestHelper.parseGameMap(rectangularMap);
+        assertSame(Wall.INSTANCE, gameMap.getEntity(Position.of(0, 0)));
+        assertSame(Empty.INSTANCE, gameMap.getEntity(Position.of(2, 1)));
+        assertSame(Player.of(0), gameMap.getEntity(Position.of(1, 1)));
+        assertSame(Box.of(0), gameMap.getEntity(Position.of(2, 4)));
+        assertEquals(new Box(30), Box.of(30));
+    }
+
     @Tag(TestKind.REGRESSION)
     @Test
     void testWallParsing() {
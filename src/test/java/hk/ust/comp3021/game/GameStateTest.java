@@ -8,11 +8,18 @@ import hk.ust.comp3021.utils.TestKind;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -83,6 +90,30 @@ class GameStateTest {
         assertTrue(gameState.isWin());
     }
 
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testWinRevertedByUndo() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+            233
+            ######
+            #Aa@.#
+            ######
+            """
+        ));
+        assertFalse(gameState.isWin());
+        gameState.move(Position.of(2, 1), Position.of(3, 1));
+        gameState.move(Position.of(1, 1), Position.of(2, 1));
+        gameState.checkpoint();
+        assertTrue(gameState.isWin());
+
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        assertFalse(gameState.isWin());
+
+        gameState.undo();
+        assertFalse(gameState.isWin());
+        assertInstanceOf(Box.class, gameState.getEntity(Position.of(2, 1)));
+    }
+
     @Tag(TestKind.REGRESSION)
     @Test
     void testMove() {
@@ -169,6 +200,57 @@ class GameStateTest {
         assertEquals(232, gameState.getUndoQuota().orElse(null));
     }
 
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testUndoLongHistory() {
+        final var gameMap = TestHelper.parseGameMap("""
+            -1
+            ######################################
+            #Aa................................@.#
+            #....................................#
+            ######################################
+            """);
+        final var gameState = new GameState(gameMap);
+        for (int x = 2; x < 35; x++) {
+            gameState.move(Position.of(x, 1), Position.of(x + 1, 1));
+            gameState.move(Position.of(x - 1, 1), Position.of(x, 1));
+            gameState.checkpoint();
+            gameState.move(Position.of(x, 1), Position.of(x, 2));
+            gameState.move(Position.of(x, 2), Position.of(x, 1));
+        }
+        assertTrue(gameState.isWin());
+
+        for (int i = 0; i < 33; i++)
+            gameState.undo();
+        final var initialState = new GameState(gameMap);
+        for (int x = 0; x < gameMap.getMaxWidth(); x++) {
+            for (int y = 0; y < gameMap.getMaxHeight(); y++)
+                assertEquals(initialState.getEntity(Position.of(x, y)), gameState.getEntity(Position.of(x, y)));
+        }
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testUndoBeyondLimit() {
+        final var gameMap = TestHelper.parseGameMap("""
+            2
+            #######
+            #Aa..@#
+            #######
+            """);
+        final var gameState = new GameState(gameMap);
+        for (int x = 2; x < 5; x++) {
+            gameState.move(Position.of(x, 1), Position.of(x + 1, 1));
+            gameState.move(Position.of(x - 1, 1), Position.of(x, 1));
+            gameState.checkpoint();
+        }
+        gameState.undo();
+        gameState.undo();
+        assertEquals(Position.of(2, 1), gameState.getPlayerPositionById(0));
+        assertInstanceOf(Box.class, gameState.getEntity(Position.of(3, 1)));
+        assertEquals(0, gameState.getUndoQuota().orElse(null));
+    }
+
     @Tag(TestKind.REGRESSION)
     @Test
     void testUndoWhenThereIsMoveButNoCheckpoint() {
@@ -203,6 +285,246 @@ class GameStateTest {
         assertEquals(233, gameState.getUndoQuota().orElse(null));
     }
 
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testBackendsAgree() {
+        final var gameMap = TestHelper.parseGameMap("""
+            233
+            ######
+            #.Aa@#
+            #..a@#
+            ######
+            """
+        );
+        final var gridState = new GameState(gameMap, GameState.Backend.GRID);
+        final var mapState = new GameState(gameMap, GameState.Backend.MAP);
+        assertEquals(gridState, mapState);
+        assertEquals(gridState.hashCode(), mapState.hashCode());
+
+        for (final var state : Arrays.asList(gridState, mapState)) {
+            state.move(Position.of(3, 1), Position.of(4, 1));
+            state.move(Position.of(2, 1), Position.of(3, 1));
+        }
+        assertEquals(gridState, mapState);
+        assertEquals(gridState.hashCode(), mapState.hashCode());
+        assertEquals(Position.of(3, 1), mapState.getPlayerPositionById(0));
+        assertInstanceOf(Box.class, mapState.getEntity(Position.of(4, 1)));
+        assertNull(gridState.getEntity(Position.of(-1, 0)));
+        assertNull(gridState.getEntity(Position.of(6, 0)));
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testPlayerIndexAfterUndo() {
+        final var gameState = new GameState(TestHelper.parseGameMap("""
+            233
+            #######
+            #.Aa@.#
+            #.Bb@.#
+            #######
+            """
+        ));
+        gameState.move(Position.of(2, 2), Position.of(1, 2));
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        gameState.move(Position.of(2, 1), Position.of(3, 1));
+        gameState.checkpoint();
+        assertEquals(Position.of(3, 1), gameState.getPlayerPositionById(0));
+        assertEquals(Position.of(1, 2), gameState.getPlayerPositionById(1));
+
+        gameState.undo();
+        assertEquals(Position.of(2, 1), gameState.getPlayerPositionById(0));
+        assertEquals(Position.of(2, 2), gameState.getPlayerPositionById(1));
+        assertEquals(new HashSet<>(Arrays.asList(Position.of(2, 1), Position.of(2, 2))), gameState.getAllPlayerPositions());
+        assertEquals(new HashSet<>(Arrays.asList(new Player(0), new Player(1))), gameState.getAllPlayers());
+        assertNull(gameState.getPlayerPositionById(2));
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testZobristKey() {
+        final var gameMap = TestHelper.parseGameMap("""
+            233
+            #######
+            #.Aa@.#
+            #.B..b#
+            #@....#
+            #######
+            """);
+        final var initialKey = new GameState(gameMap).zobristKey();
+        final var state0 = new GameState(gameMap);
+        final var state1 = new GameState(gameMap, GameState.Backend.MAP);
+        assertEquals(initialKey, state1.zobristKey());
+
+        state0.move(Position.of(2, 1), Position.of(1, 1));
+        state0.move(Position.of(2, 2), Position.of(3, 2));
+        state1.move(Position.of(2, 2), Position.of(3, 2));
+        state1.move(Position.of(2, 1), Position.of(1, 1));
+        assertNotEquals(initialKey, state0.zobristKey());
+        assertEquals(state0.zobristKey(), state1.zobristKey());
+        assertEquals(state0, state1);
+        assertEquals(state0.hashCode(), state1.hashCode());
+
+        state0.undo();
+        assertEquals(initialKey, state0.zobristKey());
+        assertNotEquals(state0, state1);
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testDrainDirtyCells() {
+        final var gameMap = TestHelper.parseGameMap("""
+            233
+            #######
+            #.Aa@.#
+            #.B..b#
+            #@....#
+            #######
+            """);
+        final var gameState = new GameState(gameMap);
+        final var dirty = new ArrayList<Position>();
+        gameState.drainDirtyCells(packed -> dirty.add(Position.of(packed)));
+        assertEquals(List.of(), dirty);
+
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        gameState.move(Position.of(2, 1), Position.of(3, 1));
+        gameState.drainDirtyCells(packed -> dirty.add(Position.of(packed)));
+        assertEquals(List.of(Position.of(3, 1), Position.of(4, 1), Position.of(2, 1)), dirty);
+
+        dirty.clear();
+        gameState.drainDirtyCells(packed -> dirty.add(Position.of(packed)));
+        assertEquals(List.of(), dirty);
+
+        gameState.move(Position.of(2, 2), Position.of(3, 2));
+        gameState.move(Position.of(3, 2), Position.of(2, 2));
+        gameState.undo();
+        gameState.drainDirtyCells(packed -> dirty.add(Position.of(packed)));
+        assertEquals(Set.of(Position.of(2, 1), Position.of(3, 1), Position.of(4, 1), Position.of(2, 2), Position.of(3, 2)),
+            new HashSet<>(dirty));
+        assertEquals(5, dirty.size());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @EnumSource(GameState.Backend.class)
+    void testCopy(GameState.Backend backend) {
+        final var gameMap = TestHelper.parseGameMap("""
+            1
+            #######
+            #.Aa@.#
+            #.B..b#
+            #@....#
+            #######
+            """);
+        final var gameState = new GameState(gameMap, backend);
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        gameState.move(Position.of(2, 1), Position.of(3, 1));
+        gameState.checkpoint();
+        gameState.move(Position.of(2, 2), Position.of(1, 2));
+
+        final var copy = gameState.copy();
+        assertEquals(gameState, copy);
+        assertEquals(gameState.zobristKey(), copy.zobristKey());
+        assertEquals(gameState.getAllPlayerPositions(), copy.getAllPlayerPositions());
+        final var dirty = new ArrayList<Position>();
+        copy.drainDirtyCells(packed -> dirty.add(Position.of(packed)));
+        assertEquals(List.of(), dirty);
+
+        copy.undo();
+        assertEquals(Position.of(2, 1), copy.getPlayerPositionById(0));
+        assertEquals(Position.of(2, 2), copy.getPlayerPositionById(1));
+        assertEquals(Position.of(3, 1), gameState.getPlayerPositionById(0));
+        assertEquals(Position.of(1, 2), gameState.getPlayerPositionById(1));
+        assertEquals(Optional.of(0), copy.getUndoQuota());
+        assertEquals(Optional.of(1), gameState.getUndoQuota());
+        gameState.undo();
+        assertEquals(gameState, copy);
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @EnumSource(GameState.Backend.class)
+    void testSnapshot(GameState.Backend backend) {
+        final var gameMap = TestHelper.parseGameMap("""
+            1
+            #######
+            #.Aa@.#
+            #.B..b#
+            #@....#
+            #######
+            """);
+        final var gameState = new GameState(gameMap, backend);
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        gameState.move(Position.of(2, 1), Position.of(3, 1));
+        gameState.checkpoint();
+
+        final var snapshot = gameState.snapshot();
+        assertEquals(gameState, snapshot);
+        assertEquals(gameState.zobristKey(), snapshot.zobristKey());
+        assertArrayEquals(gameState.getBoxBits(), snapshot.getBoxBits());
+        assertEquals(Optional.of(1), snapshot.getUndoQuota());
+
+        snapshot.undo();
+        assertEquals(gameState, snapshot);
+        gameState.move(Position.of(2, 2), Position.of(1, 2));
+        assertEquals(Position.of(2, 2), snapshot.getPlayerPositionById(1));
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @EnumSource(GameState.Backend.class)
+    void testBitLayers(GameState.Backend backend) {
+        final var gameMap = TestHelper.parseGameMap("""
+            -1
+            #######
+            #.Aa@.#
+            #.B..b#
+            #@....#
+            #######
+            """);
+        final var gameState = new GameState(gameMap, backend);
+        assertLayersMatchEntities(gameState);
+        assertEquals(BitSet.valueOf(new long[]{1L << (7 + 4) | 1L << (21 + 1)}), BitSet.valueOf(gameState.getDestinationBits()));
+
+        gameState.move(Position.of(3, 1), Position.of(4, 1));
+        gameState.move(Position.of(2, 1), Position.of(3, 1));
+        gameState.checkpoint();
+        gameState.move(Position.of(5, 2), Position.of(5, 3));
+        gameState.move(Position.of(2, 2), Position.of(3, 2));
+        assertLayersMatchEntities(gameState);
+        assertTrue(BitSet.valueOf(gameState.getBoxBits(0)).get(7 + 4));
+        assertTrue(BitSet.valueOf(gameState.getBoxBits(1)).get(21 + 5));
+        assertTrue(BitSet.valueOf(gameState.getBoxBits(2)).isEmpty());
+
+        final var copy = gameState.copy();
+        gameState.undo();
+        assertLayersMatchEntities(gameState);
+        assertLayersMatchEntities(copy);
+        assertFalse(Arrays.equals(gameState.getBoxBits(), copy.getBoxBits()));
+        gameState.undo();
+        assertLayersMatchEntities(gameState);
+        assertArrayEquals(new GameState(gameMap).getBoxBits(), gameState.getBoxBits());
+    }
+
+    private static void assertLayersMatchEntities(GameState gameState) {
+        final var width = gameState.getMapMaxWidth();
+        final var walls = BitSet.valueOf(gameState.getWallBits());
+        final var destinations = BitSet.valueOf(gameState.getDestinationBits());
+        final var boxes = BitSet.valueOf(gameState.getBoxBits());
+        final var players = BitSet.valueOf(gameState.getPlayerBits());
+        for (int y = 0; y < gameState.getMapMaxHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                final var cell = y * width + x;
+                final var entity = gameState.getEntity(Position.of(x, y));
+                assertEquals(entity instanceof Wall, walls.get(cell));
+                assertEquals(gameState.getDestinations().contains(Position.of(x, y)), destinations.get(cell));
+                assertEquals(entity instanceof Box, boxes.get(cell));
+                assertEquals(entity instanceof Player, players.get(cell));
+                if (entity instanceof Box box)
+                    assertTrue(BitSet.valueOf(gameState.getBoxBits(box.getPlayerId())).get(cell));
+            }
+        }
+    }
+
     private Entity generateEntity(int key) {
         return switch (key % 4) {
             case 0 -> new Box(0);
@@ -0,0 +1,37 @@
+package hk.ust.comp3021.game;
+
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class PositionTest {
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testInterning() {
+        Position.reserve(20, 10);
+        assertSame(Position.of(19, 9), Position.of(19, 9));
+        assertEquals(new Position(3, 4), Position.of(3, 4));
+        assertEquals(Position.of(-1, 4), Position.of(-1, 4));
+        assertEquals(Position.of(5000, 5000), Position.of(5000, 5000));
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testPacking() {
+        final var packed = Position.pack(-3, 7);
+        assertEquals(-3, Position.x(packed));
+        assertEquals(7, Position.y(packed));
+        assertEquals(Position.of(-3, 7), Position.of(packed));
+        assertEquals(packed, Position.of(-3, 7).pack());
+
+        final var neighbor = Position.neighbor(packed, 1, -8);
+        assertEquals(-2, Position.x(neighbor));
+        assertEquals(-1, Position.y(neighbor));
+    }
+}
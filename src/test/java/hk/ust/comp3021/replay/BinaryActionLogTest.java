@@ -0,0 +1,97 @@
+package hk.ust.comp3021.replay;
+
+import hk.ust.comp3021.actions.Exit;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class BinaryActionLogTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testHeader() throws IOException {
+        final var binaryFile = convert("9\nH\nJ\nfoo\nK\n", BinaryActionLog.Encoding.RUN_LENGTH);
+
+        final var header = ByteBuffer.wrap(Files.readAllBytes(binaryFile));
+        assertEquals(BinaryActionLog.MAGIC, header.getInt());
+        assertEquals(BinaryActionLog.VERSION, header.get());
+        assertEquals(BinaryActionLog.FLAG_RUN_LENGTH, header.get());
+        assertEquals(9, header.getInt());
+        assertEquals(3, header.getLong());
+        assertEquals(3, header.remaining());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testNibbleSize() throws IOException {
+        final var binaryFile = convert("0\nH\nJ\nK\nL\nU\n", BinaryActionLog.Encoding.NIBBLE);
+
+        assertEquals(BinaryActionLog.HEADER_SIZE + 3, Files.size(binaryFile));
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testRunLengthSize() throws IOException {
+        final var content = "0\n" + "L\n".repeat(BinaryActionLog.MAX_RUN + 1) + "H\n";
+        final var binaryFile = convert(content, BinaryActionLog.Encoding.RUN_LENGTH);
+
+        assertEquals(BinaryActionLog.HEADER_SIZE + 3, Files.size(binaryFile));
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @EnumSource(BinaryActionLog.Encoding.class)
+    void testRoundTrip(BinaryActionLog.Encoding encoding) throws IOException {
+        final var random = new Random(3021);
+        final var content = new StringBuilder("25\n");
+        for (int i = 0; i < 100_001; i++) {
+            final var action = "HJKLU".charAt(random.nextInt(5));
+            content.append((action + "\n").repeat(1 + random.nextInt(40)));
+            if (random.nextInt(10) == 0)
+                content.append("invalid\n");
+        }
+        content.append("E\nH\n");
+        final var textFile = tempDir.resolve("actions.txt");
+        Files.writeString(textFile, content);
+        final var binaryFile = tempDir.resolve("actions.bin");
+        BinaryActionLog.convert(textFile, binaryFile, encoding);
+
+        final var expected = new ChannelInputEngine(textFile);
+        final var actual = new BinaryInputEngine(binaryFile);
+        assertEquals(25, actual.getPlayerId());
+        while (true) {
+            final var expectedAction = expected.fetchAction();
+            final var actualAction = actual.fetchAction();
+            assertSame(expectedAction.getClass(), actualAction.getClass());
+            assertEquals(expectedAction.getInitiator(), actualAction.getInitiator());
+            if (expectedAction instanceof Exit && expectedAction.getInitiator() == -1)
+                break;
+        }
+        assertTrue(Files.size(binaryFile) * 4 <= Files.size(textFile));
+    }
+
+    private Path convert(String content, BinaryActionLog.Encoding encoding) throws IOException {
+        final var textFile = Files.createTempFile(tempDir, "actions", ".txt");
+        Files.writeString(textFile, content);
+        final var binaryFile = Files.createTempFile(tempDir, "actions", ".bin");
+        BinaryActionLog.convert(textFile, binaryFile, encoding);
+        return binaryFile;
+    }
+}
@@ -0,0 +1,113 @@
+package hk.ust.comp3021.replay;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.actions.Exit;
+import hk.ust.comp3021.actions.Undo;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class BinaryInputEngineTest {
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testNibbles() {
+        // L, U, E, then an unused nibble.
+        final var inputEngine = new BinaryInputEngine(channelOf(header(0, 3, 3), (byte) 0x34, (byte) 0x5f));
+
+        assertEquals(3, inputEngine.getPlayerId());
+        assertEquals("Right", inputEngine.fetchAction().getClass().getSimpleName());
+        assertTrue(inputEngine.fetchAction() instanceof Undo);
+        final var exit = inputEngine.fetchAction();
+        assertTrue(exit instanceof Exit);
+        assertEquals(3, exit.getInitiator());
+        assertEquals(-1, inputEngine.fetchAction().getInitiator());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testRuns() {
+        // 3 times J, then 1 time H.
+        final var inputEngine = new BinaryInputEngine(channelOf(header(BinaryActionLog.FLAG_RUN_LENGTH, 1, 4),
+            (byte) (1 << 5 | 2), (byte) 0));
+        final var buffer = new Action[3];
+
+        assertEquals(3, inputEngine.fetchActions(buffer));
+        for (final var action : buffer)
+            assertEquals("Down", action.getClass().getSimpleName());
+        assertEquals(1, inputEngine.fetchActions(buffer));
+        assertEquals("Left", buffer[0].getClass().getSimpleName());
+        assertEquals(1, inputEngine.fetchActions(buffer));
+        assertTrue(buffer[0] instanceof Exit);
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testFetchActionsStopsAfterExit() {
+        // H, E, H, H.
+        final var inputEngine = new BinaryInputEngine(channelOf(header(0, 0, 4), (byte) 0x05, (byte) 0x00));
+        final var buffer = new Action[8];
+
+        assertEquals(2, inputEngine.fetchActions(buffer));
+        assertTrue(buffer[1] instanceof Exit);
+        assertEquals(0, buffer[1].getInitiator());
+        assertEquals(2, inputEngine.fetchActions(buffer));
+        assertEquals(-1, inputEngine.fetchAction().getInitiator());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testInvalidLogs() {
+        final var wrongMagic = header(0, 0, 0).putInt(0, 0);
+        assertThrows(IllegalArgumentException.class, () -> new BinaryInputEngine(channelOf(wrongMagic)));
+        final var wrongVersion = header(0, 0, 0).put(4, (byte) 99);
+        assertThrows(IllegalArgumentException.class, () -> new BinaryInputEngine(channelOf(wrongVersion)));
+        assertThrows(IllegalArgumentException.class, () -> new BinaryInputEngine(channelOf(ByteBuffer.allocate(3))));
+
+        final var truncated = new BinaryInputEngine(channelOf(header(0, 0, 3), (byte) 0x12));
+        truncated.fetchAction();
+        truncated.fetchAction();
+        assertThrows(UncheckedIOException.class, truncated::fetchAction);
+
+        final var invalidCode = new BinaryInputEngine(channelOf(header(0, 0, 1), (byte) 0x70));
+        assertThrows(IllegalArgumentException.class, invalidCode::fetchAction);
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testClose() {
+        final var channel = channelOf(header(0, 0, 4), (byte) 0x34, (byte) 0x50);
+        final var inputEngine = new BinaryInputEngine(channel);
+        assertEquals("Right", inputEngine.fetchAction().getClass().getSimpleName());
+        assertTrue(channel.isOpen());
+        inputEngine.close();
+        assertFalse(channel.isOpen());
+    }
+
+    private static ByteBuffer header(int flags, int playerId, long count) {
+        return ByteBuffer.allocate(BinaryActionLog.HEADER_SIZE)
+            .putInt(BinaryActionLog.MAGIC)
+            .put(BinaryActionLog.VERSION)
+            .put((byte) flags)
+            .putInt(playerId)
+            .putLong(count);
+    }
+
+    private static ReadableByteChannel channelOf(ByteBuffer header, byte... actions) {
+        final var bytes = new byte[header.capacity() + actions.length];
+        header.get(0, bytes, 0, header.capacity());
+        System.arraycopy(actions, 0, bytes, header.capacity(), actions.length);
+        return Channels.newChannel(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,182 @@
+package hk.ust.comp3021.replay;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.actions.Exit;
+import hk.ust.comp3021.actions.Undo;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class ChannelInputEngineTest {
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testExit() {
+        final var inputEngine = new ChannelInputEngine(channelOf("0\nexit"));
+
+        final var action = inputEngine.fetchAction();
+
+        assertTrue(action instanceof Exit);
+        assertEquals(0, action.getInitiator());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @CsvSource({"U,1", "u,2"})
+    void testUndo(String input, int playerId) {
+        final var inputEngine = new ChannelInputEngine(channelOf(playerId + "\n" + input));
+
+        final var action = inputEngine.fetchAction();
+
+        assertTrue(action instanceof Undo);
+        assertEquals(playerId, action.getInitiator());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @CsvSource({
+        "H,Left,1",
+        "J,Down,1",
+        "K,Up,1",
+        "L,Right,1",
+    })
+    void testMove(String input, String name, int playerId) {
+        final var inputEngine = new ChannelInputEngine(channelOf(playerId + "\n" + input));
+
+        final var action = inputEngine.fetchAction();
+
+        assertEquals(name, action.getClass().getSimpleName());
+        assertEquals(playerId, action.getInitiator());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testSkipInvalidLines() {
+        final var inputEngine = new ChannelInputEngine(channelOf("3\r\n\r\nxL\n\nJunk\n?\nk"));
+
+        assertEquals("Down", inputEngine.fetchAction().getClass().getSimpleName());
+        assertEquals("Up", inputEngine.fetchAction().getClass().getSimpleName());
+        final var exit = inputEngine.fetchAction();
+        assertTrue(exit instanceof Exit);
+        assertEquals(-1, exit.getInitiator());
+        assertTrue(inputEngine.fetchAction() instanceof Exit);
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testSameAsLineDecoding() {
+        final var random = new Random(3021);
+        final var content = new StringBuilder("7\n");
+        for (int i = 0; i < 200_000; i++) {
+            content.append("HJKLUhjkluXx ".charAt(random.nextInt(13)));
+            if (random.nextInt(4) == 0)
+                content.append("trailing");
+            content.append('\n');
+        }
+        final var expected = content.toString().lines()
+                .skip(1)
+                .filter(line -> "HJKLUEhjklue".indexOf(line.charAt(0)) >= 0)
+                .map(line -> StreamInputEngine.char2Action(7, line.charAt(0)))
+                .toList();
+        final var inputEngine = new ChannelInputEngine(channelOf(content.toString()));
+
+        assertEquals(7, inputEngine.getPlayerId());
+        for (final var action : expected) {
+            final var actual = inputEngine.fetchAction();
+            assertEquals(action.getClass(), actual.getClass());
+            assertEquals(action.getInitiator(), actual.getInitiator());
+        }
+        assertTrue(inputEngine.fetchAction() instanceof Exit);
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testShortReads() {
+        final var bytes = bytesOf("12\nL\nfoo\nu\n");
+        final var source = ByteBuffer.wrap(bytes);
+        final ReadableByteChannel channel = new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) {
+                if (!source.hasRemaining())
+                    return -1;
+                dst.put(source.get());
+                return 1;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final var inputEngine = new ChannelInputEngine(channel);
+
+        assertEquals(12, inputEngine.getPlayerId());
+        assertEquals("Right", inputEngine.fetchAction().getClass().getSimpleName());
+        assertTrue(inputEngine.fetchAction() instanceof Undo);
+        assertTrue(inputEngine.fetchAction() instanceof Exit);
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testFetchActions() {
+        final var inputEngine = new ChannelInputEngine(channelOf("4\nH\nx\nJ\nK\nE\nL\n"));
+        final var buffer = new Action[2];
+
+        assertEquals(2, inputEngine.fetchActions(buffer));
+        assertEquals("Left", buffer[0].getClass().getSimpleName());
+        assertEquals("Down", buffer[1].getClass().getSimpleName());
+        assertEquals(2, inputEngine.fetchActions(buffer));
+        assertEquals("Up", buffer[0].getClass().getSimpleName());
+        assertTrue(buffer[1] instanceof Exit);
+        assertEquals(4, buffer[1].getInitiator());
+        assertEquals(1, inputEngine.fetchActions(buffer));
+        assertEquals("Right", buffer[0].getClass().getSimpleName());
+        assertEquals(1, inputEngine.fetchActions(buffer));
+        assertTrue(buffer[0] instanceof Exit);
+        assertEquals(-1, buffer[0].getInitiator());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testCloseChannel() {
+        final var exhausted = channelOf("0\nL\n");
+        final var inputEngine = new ChannelInputEngine(exhausted);
+        inputEngine.fetchAction();
+        assertTrue(exhausted.isOpen());
+        assertTrue(inputEngine.fetchAction() instanceof Exit);
+        assertFalse(exhausted.isOpen());
+
+        final var exited = channelOf("0\nE\nL\n");
+        final var exitedEngine = new ChannelInputEngine(exited);
+        assertTrue(exitedEngine.fetchAction() instanceof Exit);
+        exitedEngine.close();
+        exitedEngine.close();
+        assertFalse(exited.isOpen());
+    }
+
+    private static byte[] bytesOf(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ReadableByteChannel channelOf(String content) {
+        return Channels.newChannel(new ByteArrayInputStream(bytesOf(content)));
+    }
+}
@@ -0,0 +1,117 @@
+package hk.ust.comp3021.replay;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.actions.Exit;
+import hk.ust.comp3021.actions.Undo;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class MappedInputEngineTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testActions() throws IOException {
+        final var inputEngine = new MappedInputEngine(write("2\r\nL\n\nfoo\nu\nexit\n"));
+
+        assertEquals(2, inputEngine.getPlayerId());
+        final var right = inputEngine.fetchAction();
+        assertEquals("Right", right.getClass().getSimpleName());
+        assertEquals(2, right.getInitiator());
+        assertTrue(inputEngine.fetchAction() instanceof Undo);
+        final var exit = inputEngine.fetchAction();
+        assertTrue(exit instanceof Exit);
+        assertEquals(2, exit.getInitiator());
+        final var end = inputEngine.fetchAction();
+        assertTrue(end instanceof Exit);
+        assertEquals(-1, end.getInitiator());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testEmptyFile() throws IOException {
+        final var actionFile = write("");
+
+        assertThrows(NoSuchElementException.class, () -> new MappedInputEngine(actionFile));
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @ValueSource(longs = {1, 7, 4096})
+    void testSameAsChannelInputEngine(long regionSize) throws IOException {
+        final var random = new Random(regionSize);
+        final var content = new StringBuilder("15\n");
+        for (int i = 0; i < 20_000; i++) {
+            content.append("HJKLUhjklux\r".charAt(random.nextInt(12)));
+            content.append(random.nextBoolean() ? "\n" : "\r\n");
+        }
+        final var actionFile = write(content.toString());
+        final var mapped = new MappedInputEngine(actionFile, regionSize);
+        final var channel = new ChannelInputEngine(actionFile);
+
+        assertEquals(15, mapped.getPlayerId());
+        while (true) {
+            final var expected = channel.fetchAction();
+            final var actual = mapped.fetchAction();
+            assertSame(expected.getClass(), actual.getClass());
+            assertEquals(expected.getInitiator(), actual.getInitiator());
+            if (expected instanceof Exit)
+                break;
+        }
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @ValueSource(longs = {3, 4096})
+    void testFetchActions(long regionSize) throws IOException {
+        final var actionFile = write("0\nH\nJ\nK\nL\nU\nH\nJ\n");
+        final var inputEngine = new MappedInputEngine(actionFile, regionSize);
+        final var reference = new ChannelInputEngine(actionFile);
+        final var buffer = new Action[3];
+
+        while (true) {
+            final var count = inputEngine.fetchActions(buffer);
+            assertTrue(count >= 1);
+            for (int i = 0; i < count; i++)
+                assertSame(reference.fetchAction().getClass(), buffer[i].getClass());
+            if (buffer[count - 1] instanceof Exit)
+                break;
+        }
+        assertTrue(reference.fetchAction() instanceof Exit);
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testClose() throws IOException {
+        final var inputEngine = new MappedInputEngine(write("0\nL\nL\nL\nL\n"), 6);
+        assertEquals("Right", inputEngine.fetchAction().getClass().getSimpleName());
+        inputEngine.close();
+        inputEngine.close();
+        // The region already mapped is still decoded, but no other region is mapped.
+        assertEquals("Right", inputEngine.fetchAction().getClass().getSimpleName());
+        assertTrue(inputEngine.fetchAction() instanceof Exit);
+    }
+
+    private Path write(String content) throws IOException {
+        final var actionFile = Files.createTempFile(tempDir, "actions", ".txt");
+        Files.writeString(actionFile, content);
+        return actionFile;
+    }
+}
@@ -0,0 +1,164 @@
+package hk.ust.comp3021.replay;
+
+import hk.ust.comp3021.actions.Action;
+import hk.ust.comp3021.actions.Exit;
+import hk.ust.comp3021.actions.Move;
+import hk.ust.comp3021.game.InputEngine;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestKind;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class PrefetchingInputEngineTest {
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 1024})
+    void testSameOrder(int capacity) {
+        final var actions = actionsOf(10_000);
+        final var inputEngine = new PrefetchingInputEngine(new ListInputEngine(actions), capacity, ThreadFactories.platform());
+
+        for (final var action : actions)
+            assertSame(action, inputEngine.fetchAction());
+        final var exit = inputEngine.fetchAction();
+        assertTrue(exit instanceof Exit);
+        assertEquals(2, exit.getInitiator());
+        assertSame(exit, inputEngine.fetchAction());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testFetchActions() {
+        final var actions = actionsOf(1000);
+        final var inputEngine = new PrefetchingInputEngine(new ListInputEngine(actions), 16, ThreadFactories.platform());
+        final var buffer = new Action[7];
+
+        final var fetched = new ArrayList<Action>();
+        while (true) {
+            final var count = inputEngine.fetchActions(buffer);
+            assertTrue(count > 0 && count <= buffer.length);
+            fetched.addAll(List.of(buffer).subList(0, count));
+            if (buffer[count - 1] instanceof Exit)
+                break;
+        }
+        assertEquals(actions, fetched.subList(0, actions.size()));
+        assertEquals(actions.size() + 1, fetched.size());
+        assertEquals(1, inputEngine.fetchActions(buffer));
+        assertSame(fetched.get(actions.size()), buffer[0]);
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testStopAfterExit() throws InterruptedException {
+        final var fetches = new AtomicInteger();
+        final var source = new InputEngine() {
+            @Override
+            public @NotNull Action fetchAction() {
+                return fetches.incrementAndGet() == 3 ? new Exit(1) : new Move.Up(1);
+            }
+        };
+        final var inputEngine = new PrefetchingInputEngine(source, 4, ThreadFactories.platform());
+
+        assertTrue(inputEngine.fetchAction() instanceof Move.Up);
+        assertTrue(inputEngine.fetchAction() instanceof Move.Up);
+        assertTrue(inputEngine.fetchAction() instanceof Exit);
+        assertTrue(inputEngine.fetchAction() instanceof Exit);
+        Thread.sleep(10);
+        assertEquals(3, fetches.get());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testReaderFailure() {
+        final var source = new InputEngine() {
+            @Override
+            public @NotNull Action fetchAction() {
+                throw new IllegalStateException("Broken input");
+            }
+        };
+        final var inputEngine = new PrefetchingInputEngine(source, 4, ThreadFactories.platform());
+
+        final var e = assertThrows(IllegalStateException.class, inputEngine::fetchAction);
+        assertEquals("Broken input", e.getMessage());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testClose() throws InterruptedException {
+        final var started = new CountDownLatch(1);
+        final var readerThread = new Thread[1];
+        final var source = new InputEngine() {
+            @Override
+            public @NotNull Action fetchAction() {
+                return new Move.Down(0);
+            }
+        };
+        final var inputEngine = new PrefetchingInputEngine(source, 2, runnable -> {
+            readerThread[0] = new Thread(() -> {
+                started.countDown();
+                runnable.run();
+            });
+            return readerThread[0];
+        });
+        started.await();
+
+        assertTrue(inputEngine.fetchAction() instanceof Move.Down);
+        inputEngine.close();
+        readerThread[0].join(1000);
+        assertFalse(readerThread[0].isAlive());
+        assertTrue(readerThread[0].isDaemon());
+        var action = inputEngine.fetchAction();
+        while (action instanceof Move.Down)
+            action = inputEngine.fetchAction();
+        assertTrue(action instanceof Exit);
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testInvalidCapacity() {
+        final var source = new ListInputEngine(List.of());
+        assertThrows(IllegalArgumentException.class, () -> new PrefetchingInputEngine(source, 0, ThreadFactories.platform()));
+    }
+
+    private static List<Action> actionsOf(int count) {
+        final var actions = new ArrayList<Action>(count);
+        for (int i = 0; i < count; i++) {
+            actions.add(switch (i % 4) {
+                case 0 -> new Move.Left(2);
+                case 1 -> new Move.Down(2);
+                case 2 -> new Move.Up(2);
+                default -> new Move.Right(2);
+            });
+        }
+        return actions;
+    }
+
+    /**
+     * An input engine returning the given actions, and then {@link Exit} actions of the same player.
+     */
+    private static class ListInputEngine implements InputEngine {
+        private final List<Action> actions;
+        private int index = 0;
+
+        private ListInputEngine(List<Action> actions) {
+            this.actions = actions;
+        }
+
+        @Override
+        public @NotNull Action fetchAction() {
+            return index < actions.size() ? actions.get(index++) : new Exit(2);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package hk.ust.comp3021.replay;
 import hk.ust.comp3021.actions.*;
 import hk.ust.comp3021.game.*;
 import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.StringResources;
 import hk.ust.comp3021.utils.TestHelper;
 import hk.ust.comp3021.utils.TestKind;
 import org.jetbrains.annotations.NotNull;
@@ -10,13 +11,18 @@ import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.apache.commons.collections4.CollectionUtils;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -673,6 +679,314 @@ class ReplaySokobanGameTest {
         final var expected = (float) timeElapsed / 1000 * fps;
         assertEquals(expected, renderTimes.size(), (float) (expected * 0.1)); // 10% error tolerance
     }
+
+    @DisplayName("Headless mode should render only the final frame, or nothing")
+    @Test
+    @Tag(TestKind.REGRESSION)
+    void testHeadless() {
+        final var map = """
+                -1
+                ######
+                #Aa.@#
+                ######
+                """;
+        for (final var renderMode : List.of(ReplaySokobanGame.RenderMode.FINAL_FRAME, ReplaySokobanGame.RenderMode.NONE)) {
+            final var gameState = new GameState(TestHelper.parseGameMap(map));
+            final var inputEngine = mock(StreamInputEngine.class);
+            final var renderingEngine = mock(RenderingEngine.class);
+            when(inputEngine.fetchAction()).thenReturn(new Move.Right(0), new Move.Right(0), new Exit());
+
+            final var game = new ReplaySokobanGame(ReplaySokobanGame.Mode.ROUND_ROBIN, 1, gameState, List.of(inputEngine),
+                    renderingEngine, ReplaySokobanGame.Options.DEFAULT.withRenderMode(renderMode));
+            game.run();
+
+            final var expectedRenders = renderMode == ReplaySokobanGame.RenderMode.FINAL_FRAME ? 1 : 0;
+            verify(renderingEngine, times(expectedRenders)).render(gameState);
+            verify(renderingEngine).message(StringResources.GAME_EXIT_MESSAGE);
+            assertTrue(gameState.isWin());
+        }
+    }
+
+    @DisplayName("Single-threaded ROUND_ROBIN scheduler should process actions in the same order as the threaded one")
+    @Test
+    @Tag(TestKind.REGRESSION)
+    void testSingleThreadRoundRobin() {
+        final var map = """
+                -1
+                #######
+                #A.@..#
+                #.a...#
+                #B.b..#
+                #...@.#
+                #######
+                """;
+        final var actions0 = Arrays.<Action>asList(new Move.Right(0), new Move.Down(0), new Move.Down(0), new Move.Left(0));
+        final var actions1 = List.<Action>of(new Move.Up(1));
+        final var actions2 = Arrays.<Action>asList(new Move.Right(1), new Move.Right(1), new Move.Down(1));
+        final var results = new ArrayList<List<Object>>();
+        for (final var scheduler : ReplaySokobanGame.Scheduler.values()) {
+            final var gameState = new GameState(TestHelper.parseGameMap(map));
+            final var inputEngines = List.of(mock(StreamInputEngine.class), mock(StreamInputEngine.class), mock(StreamInputEngine.class));
+            final var fetchThreads = Collections.synchronizedSet(new HashSet<Thread>());
+            final var actionsLists = List.of(actions0, actions1, actions2);
+            for (int i = 0; i < inputEngines.size(); i++) {
+                final var producer = new RandomlyPausedActionProducer(actionsLists.get(i));
+                when(inputEngines.get(i).fetchAction()).thenAnswer(invocation -> {
+                    fetchThreads.add(Thread.currentThread());
+                    return producer.answer(invocation);
+                });
+            }
+            final var renderingEngine = mock(RenderingEngine.class);
+            final var messages = new ConcurrentLinkedQueue<String>();
+            doAnswer(invocation -> messages.add(invocation.getArgument(0))).when(renderingEngine).message(any());
+            final var options = ReplaySokobanGame.Options.DEFAULT
+                    .withRenderMode(ReplaySokobanGame.RenderMode.NONE)
+                    .withScheduler(scheduler);
+            final var game = spy(new TestGame(ReplaySokobanGame.Mode.ROUND_ROBIN, gameState, inputEngines, renderingEngine, options));
+            final var processActions = new ActionList();
+            doAnswer(invocation -> {
+                processActions.add(invocation.getArgument(0, Action.class));
+                return invocation.callRealMethod();
+            }).when(game).processAction(any());
+
+            game.run();
+
+            assertEquals(scheduler == ReplaySokobanGame.Scheduler.SINGLE_THREAD ? 1 : 3, fetchThreads.size());
+            results.add(List.of(processActions, List.copyOf(messages), gameState.getPlayerPositionById(0),
+                    gameState.getPlayerPositionById(1)));
+        }
+        assertEquals(results.get(0), results.get(1));
+    }
+
+    @DisplayName("Threads of the game should be created by the injected thread factory")
+    @Test
+    @Tag(TestKind.REGRESSION)
+    void testThreadFactory() {
+        final var gameState = mock(GameState.class);
+        final var inputEngines = List.of(mock(StreamInputEngine.class), mock(StreamInputEngine.class));
+        inputEngines.forEach(it -> when(it.fetchAction()).thenAnswer(new RandomlyPausedActionProducer(new Move.Up(0))));
+        final var renderingEngine = mock(RenderingEngine.class);
+        final var createdThreads = new AtomicInteger();
+        final ThreadFactory threadFactory = runnable -> {
+            createdThreads.incrementAndGet();
+            return ThreadFactories.virtual().newThread(runnable);
+        };
+        final var game = new TestGame(ReplaySokobanGame.Mode.FREE_RACE, gameState, inputEngines, renderingEngine,
+                ReplaySokobanGame.Options.DEFAULT.withThreadFactory(threadFactory));
+
+        game.run();
+
+        assertEquals(inputEngines.size() + 1, createdThreads.get());
+        verify(renderingEngine, atLeastOnce()).render(gameState);
+    }
+
+    @DisplayName("Batched FREE_RACE mode should process all actions of each input engine in order, up to the first exit")
+    @Test
+    @Tag(TestKind.REGRESSION)
+    void testBatchedFreeRace() {
+        final var gameState = mock(GameState.class);
+        final var inputEngine0 = mock(InputEngine.class);
+        final var inputEngine1 = mock(InputEngine.class);
+        final var renderingEngine = mock(RenderingEngine.class);
+        final var options = ReplaySokobanGame.Options.DEFAULT.withBatchSize(3);
+        final var game = spy(new TestGame(ReplaySokobanGame.Mode.FREE_RACE, gameState, List.of(inputEngine0, inputEngine1),
+                renderingEngine, options));
+
+        final var actions0 = Arrays.<Action>asList(new Move.Down(0), new Move.Right(0), new Move.Left(0), new Move.Up(0),
+                new Move.Down(0), new Exit(0), new Move.Up(0));
+        final var actions1 = Arrays.<Action>asList(new Move.Left(1), new Undo(1), new Move.Right(1));
+        when(inputEngine0.fetchAction()).thenAnswer(new RandomlyPausedActionProducer(actions0));
+        when(inputEngine1.fetchAction()).thenAnswer(new RandomlyPausedActionProducer(actions1));
+        when(inputEngine0.fetchActions(any())).thenCallRealMethod();
+        when(inputEngine1.fetchActions(any())).thenCallRealMethod();
+        final var processActions = new ActionList();
+        doAnswer(invocation -> {
+            processActions.add(invocation.getArgument(0, Action.class));
+            return invocation.callRealMethod();
+        }).when(game).processAction(any());
+
+        game.run();
+
+        assertEquals(actions0.subList(0, 5), processActions.stream().filter(it -> it.getInitiator() == 0).toList());
+        assertEquals(actions1, processActions.stream().filter(it -> it.getInitiator() == 1).toList());
+        verify(inputEngine0, atLeastOnce()).fetchActions(any());
+    }
+
+    @DisplayName("Prefetched input engines should be processed in the ROUND_ROBIN order")
+    @Test
+    @Tag(TestKind.REGRESSION)
+    void testPrefetchedRoundRobin() {
+        final var gameState = mock(GameState.class);
+        final var inputEngine0 = mock(InputEngine.class);
+        final var inputEngine1 = mock(InputEngine.class);
+        final var renderingEngine = mock(RenderingEngine.class);
+        final var options = ReplaySokobanGame.Options.DEFAULT.withPrefetchCapacity(2);
+        final var game = spy(new TestGame(ReplaySokobanGame.Mode.ROUND_ROBIN, gameState, List.of(inputEngine0, inputEngine1),
+                renderingEngine, options));
+
+        final var actions0 = Arrays.<Action>asList(new Move.Down(0), new Move.Right(0), new Move.Left(0), new Exit(0));
+        final var actions1 = Arrays.<Action>asList(new Move.Left(1), new Undo(1), new Move.Right(1), new Move.Up(1), new Exit(1));
+        when(inputEngine0.fetchAction()).thenAnswer(new RandomlyPausedActionProducer(actions0));
+        when(inputEngine1.fetchAction()).thenAnswer(new RandomlyPausedActionProducer(actions1));
+        when(inputEngine0.fetchActions(any())).thenCallRealMethod();
+        when(inputEngine1.fetchActions(any())).thenCallRealMethod();
+        final var processActions = new ActionList();
+        doAnswer(invocation -> {
+            processActions.add(invocation.getArgument(0, Action.class));
+            return invocation.callRealMethod();
+        }).when(game).processAction(any());
+
+        game.run();
+
+        assertEquals(Arrays.asList(actions0.get(0), actions1.get(0), actions0.get(1), actions1.get(1), actions0.get(2),
+                actions1.get(2), actions1.get(3)), processActions);
+    }
+
+    @DisplayName("SNAPSHOT render mode should process actions while the renderer is busy, and render the final state")
+    @Test
+    @Tag(TestKind.REGRESSION)
+    void testSnapshotRendering() throws InterruptedException {
+        final var map = """
+                -1
+                #######
+                #A....#
+                #...a.#
+                #...@.#
+                #######
+                """;
+        final var gameState = new GameState(TestHelper.parseGameMap(map));
+        final var inputEngine = mock(InputEngine.class);
+        final var renderingEngine = mock(RenderingEngine.class);
+        final var options = ReplaySokobanGame.Options.DEFAULT.withRenderMode(ReplaySokobanGame.RenderMode.SNAPSHOT);
+        final var game = spy(new TestGame(ReplaySokobanGame.Mode.FREE_RACE, gameState, List.of(inputEngine), renderingEngine, options));
+
+        final var actions = Arrays.<Action>asList(new Move.Right(0), new Move.Right(0), new Move.Right(0), new Move.Down(0));
+        when(inputEngine.fetchAction()).thenAnswer(new RandomlyPausedActionProducer(0, 0, actions));
+        final var allProcessed = new CountDownLatch(actions.size());
+        doAnswer(invocation -> {
+            final var result = invocation.callRealMethod();
+            if (!(invocation.getArgument(0) instanceof Exit))
+                allProcessed.countDown();
+            return result;
+        }).when(game).processAction(any());
+        final var renderedStates = new ConcurrentLinkedQueue<GameState>();
+        final var processedWhileRendering = new AtomicBoolean(false);
+        doAnswer(invocation -> {
+            renderedStates.add(invocation.getArgument(0));
+            if (renderedStates.size() == 2)
+                processedWhileRendering.set(allProcessed.await(1, TimeUnit.SECONDS));
+            return null;
+        }).when(renderingEngine).render(any());
+
+        game.run();
+
+        assertTrue(processedWhileRendering.get());
+        assertTrue(renderedStates.stream().noneMatch(it -> it == gameState));
+        final var lastRendered = renderedStates.stream().reduce((first, second) -> second).orElseThrow();
+        assertEquals(gameState, lastRendered);
+        assertTrue(gameState.isWin());
+    }
+
+    @DisplayName("SNAPSHOT render mode should render the final state last, even if snapshots are published while the renderer waits")
+    @Test
+    @Tag(TestKind.REGRESSION)
+    void testSnapshotRenderingFinalFrame() {
+        final var map = """
+                -1
+                #######
+                #A....#
+                #...a.#
+                #...@.#
+                #######
+                """;
+        final var gameState = new GameState(TestHelper.parseGameMap(map));
+        final var inputEngine = mock(InputEngine.class);
+        final var renderingEngine = mock(RenderingEngine.class);
+        final var options = ReplaySokobanGame.Options.DEFAULT
+                .withRenderMode(ReplaySokobanGame.RenderMode.SNAPSHOT)
+                .withBatchSize(8);
+        final var game = spy(new TestGame(ReplaySokobanGame.Mode.FREE_RACE, 1000, gameState, List.of(inputEngine),
+                renderingEngine, options));
+
+        final var firstMoveRendered = new CountDownLatch(1);
+        final var renderedStates = new ConcurrentLinkedQueue<GameState>();
+        doAnswer(invocation -> {
+            final GameState rendered = invocation.getArgument(0);
+            renderedStates.add(rendered);
+            if (Position.of(2, 1).equals(rendered.getPlayerPositionById(0)))
+                firstMoveRendered.countDown();
+            return null;
+        }).when(renderingEngine).render(any());
+        final var fetches = new AtomicInteger();
+        when(inputEngine.fetchActions(any())).thenAnswer(invocation -> {
+            final Action[] buffer = invocation.getArgument(0);
+            return switch (fetches.getAndIncrement()) {
+                case 0 -> {
+                    buffer[0] = new Move.Right(0);
+                    yield 1;
+                }
+                case 1 -> {
+                    assertTrue(firstMoveRendered.await(1, TimeUnit.SECONDS));
+                    buffer[0] = new Move.Right(0);
+                    buffer[1] = new Move.Right(0);
+                    buffer[2] = new Move.Down(0);
+                    buffer[3] = new Exit(0);
+                    yield 4;
+                }
+                default -> {
+                    buffer[0] = new Exit(0);
+                    yield 1;
+                }
+            };
+        });
+        // The batch is processed under one acquisition of the game lock, and the renderer waits for the lock
+        // while the first action of the batch is slowly processed.
+        final var processed = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (processed.incrementAndGet() == 2)
+                Thread.sleep(50);
+            return invocation.callRealMethod();
+        }).when(game).processAction(any());
+
+        game.run();
+
+        assertTrue(gameState.isWin());
+        final var lastRendered = renderedStates.stream().reduce((first, second) -> second).orElseThrow();
+        assertEquals(gameState, lastRendered);
+    }
+
+    @DisplayName("Frame policies should catch up or drop frames missed by a slow rendering engine")
+    @ParameterizedTest
+    @EnumSource(ReplaySokobanGame.FramePolicy.class)
+    @Tag(TestKind.REGRESSION)
+    void testFramePolicy(ReplaySokobanGame.FramePolicy framePolicy) {
+        final var gameState = mock(GameState.class);
+        final var inputEngine = mock(InputEngine.class);
+        final var renderingEngine = mock(RenderingEngine.class);
+        final var options = ReplaySokobanGame.Options.DEFAULT.withFramePolicy(framePolicy);
+        final var game = new ReplaySokobanGame(ReplaySokobanGame.Mode.FREE_RACE, 2000, gameState, List.of(inputEngine),
+                renderingEngine, options);
+
+        when(inputEngine.fetchAction()).thenAnswer(new RandomlyPausedActionProducer(20, 21,
+                Arrays.asList(new Move.Right(0), new Move.Left(0), new Move.Right(0), new Move.Left(0))));
+        doAnswer(invocation -> {
+            Thread.sleep(5);
+            return null;
+        }).when(renderingEngine).render(any());
+
+        game.run();
+
+        final var stats = game.getFrameStats();
+        assertTrue(stats.renderedFrames() >= 2);
+        if (framePolicy == ReplaySokobanGame.FramePolicy.DROP) {
+            // Each render of 5 ms misses about 10 frames at 2000 FPS.
+            assertTrue(stats.droppedFrames() >= stats.renderedFrames());
+            assertTrue(stats.averageLatenessNanos() < 5_000_000);
+        } else {
+            assertEquals(0, stats.droppedFrames());
+            assertTrue(stats.averageLatenessNanos() > 5_000_000);
+        }
+    }
 }
 
 class TestGame extends ReplaySokobanGame {
@@ -688,6 +1002,15 @@ class TestGame extends ReplaySokobanGame {
         super(mode, fps, gameState, inputEngines, renderingEngine);
     }
 
+    public TestGame(Mode mode, GameState gameState, @NotNull List<? extends InputEngine> inputEngines, RenderingEngine renderingEngine,
+                    Options options) {
+        super(mode, 60, gameState, inputEngines, renderingEngine, options);
+    }
+
+    public TestGame(Mode mode, int fps, GameState gameState, @NotNull List<? extends InputEngine> inputEngines,
+                    RenderingEngine renderingEngine, Options options) {
+        super(mode, fps, gameState, inputEngines, renderingEngine, options);
+    }
 
     @Override
     public ActionResult processAction(@NotNull Action action) {
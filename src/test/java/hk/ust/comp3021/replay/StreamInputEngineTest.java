@@ -13,8 +13,10 @@ import org.junit.jupiter.params.provider.CsvSource;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(TestExtension.class)
@@ -62,6 +64,25 @@ class StreamInputEngineTest {
         assertEquals(playerId, action.getInitiator());
     }
 
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testClose() {
+        final var closed = new AtomicBoolean();
+        final var inputStream = new ByteArrayInputStream("0\nE\nL\n".getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+
+        final var inputEngine = new StreamInputEngine(inputStream);
+        assertTrue(inputEngine.fetchAction() instanceof Exit);
+        assertFalse(closed.get());
+        inputEngine.close();
+        inputEngine.close();
+        assertTrue(closed.get());
+    }
+
     private InputStream fixValueStream(String content) {
         final var bytes = content.getBytes(StandardCharsets.UTF_8);
         return new ByteArrayInputStream(bytes);
@@ -1,6 +1,7 @@
 package hk.ust.comp3021.replay;
 
 import hk.ust.comp3021.game.GameState;
+import hk.ust.comp3021.game.Position;
 import hk.ust.comp3021.utils.TestExtension;
 import hk.ust.comp3021.utils.TestHelper;
 import hk.ust.comp3021.utils.TestKind;
@@ -58,6 +59,84 @@ class TerminalRenderingEngineTest {
         assertEquals('a', lines.get(3).charAt(1));
     }
 
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testDiff() {
+        final var gameState = new GameState(TestHelper.parseGameMap(SMALL_MAP));
+        final var stream = new CapturingStream();
+        final var renderingEngine = new TerminalRenderingEngine(stream, TerminalRenderingEngine.Style.DIFF);
+
+        renderingEngine.render(gameState);
+        final var firstFrame = stream.getContent();
+        renderingEngine.render(gameState);
+        assertEquals(firstFrame, stream.getContent());
+        gameState.move(Position.of(1, 1), Position.of(2, 1));
+        renderingEngine.render(gameState);
+
+        assertEquals(firstFrame + "* 1,1:. 2,1:A\n", stream.getContent());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testAnsi() {
+        final var gameState = new GameState(TestHelper.parseGameMap(SMALL_MAP));
+        final var stream = new CapturingStream();
+        final var renderingEngine = new TerminalRenderingEngine(stream, TerminalRenderingEngine.Style.ANSI);
+
+        renderingEngine.render(gameState);
+        renderingEngine.message("hello");
+        renderingEngine.message("hello");
+        final var firstFrame = stream.getContent();
+        assertEquals(5, firstFrame.lines().count());
+        renderingEngine.render(gameState);
+        assertEquals(firstFrame, stream.getContent());
+        gameState.move(Position.of(2, 1), Position.of(3, 1));
+        renderingEngine.render(gameState);
+
+        // The frame is 4 lines high with 1 line of message below.
+        assertEquals(firstFrame + "\0337\033[4A\033[3G.\0338\033[4A\033[4Ga\0338", stream.getContent());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testAnsiReprintsScrolledFrame() {
+        final var gameState = new GameState(TestHelper.parseGameMap(SMALL_MAP));
+        final var stream = new CapturingStream();
+        final var renderingEngine = new TerminalRenderingEngine(stream, TerminalRenderingEngine.Style.ANSI, 6);
+
+        renderingEngine.render(gameState);
+        final var firstFrame = stream.getContent();
+        renderingEngine.message("first");
+        renderingEngine.message("second");
+        renderingEngine.render(gameState);
+
+        assertEquals(firstFrame + "first\nsecond\n" + firstFrame, stream.getContent().replace(System.lineSeparator(), "\n"));
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testDiffOfSnapshots() {
+        final var gameState = new GameState(TestHelper.parseGameMap(SMALL_MAP));
+        final var stream = new CapturingStream();
+        final var renderingEngine = new TerminalRenderingEngine(stream, TerminalRenderingEngine.Style.DIFF);
+
+        renderingEngine.render(gameState.copy());
+        final var firstFrame = stream.getContent();
+        gameState.move(Position.of(1, 1), Position.of(2, 1));
+        renderingEngine.render(gameState.copy());
+        renderingEngine.render(gameState.copy());
+
+        assertEquals(firstFrame + "* 1,1:. 2,1:A\n", stream.getContent());
+    }
+
+    private static final String SMALL_MAP = """
+            233
+            #####
+            #Aa.#
+            #.@.#
+            #####
+            """;
+
     static class CapturingStream extends PrintStream {
         public CapturingStream() {
             super(new ByteArrayOutputStream());
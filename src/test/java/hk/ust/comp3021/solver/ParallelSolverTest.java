@@ -0,0 +1,113 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestHelper;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class ParallelSolverTest {
+
+    private final ParallelSolver solver = new ParallelSolver(4);
+
+    @TempDir
+    private Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        solver.close();
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @EnumSource(Solver.Metric.class)
+    void testSameCostAsSolver(Solver.Metric metric) throws IOException {
+        for (final var mapText : SolverTest.solvableMaps()) {
+            final var gameMap = TestHelper.parseGameMap(mapText);
+            final var expected = new Solver(gameMap).solve(metric).solution();
+            final var result = solver.solve(gameMap, metric);
+            assertEquals(Solver.Status.SOLVED, result.status());
+            final var solution = result.solution();
+            assertNotNull(expected);
+            assertNotNull(solution);
+            if (metric == Solver.Metric.MOVES)
+                assertEquals(expected.moves(), solution.moves());
+            else
+                assertEquals(expected.pushes(), solution.pushes());
+
+            final var actionFile = tempDir.resolve("solution.txt");
+            solution.write(actionFile);
+            assertTrue(TestHelper.replay(gameMap, actionFile).isWin());
+        }
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testMetrics() {
+        final var gameMap = TestHelper.parseGameMap(SolverTest.DETOUR);
+        final var byPushes = solver.solve(gameMap, Solver.Metric.PUSHES).solution();
+        final var byMoves = solver.solve(gameMap, Solver.Metric.MOVES).solution();
+        assertNotNull(byPushes);
+        assertNotNull(byMoves);
+
+        assertEquals(1, byPushes.pushes());
+        assertEquals(10, byPushes.moves());
+        assertEquals(8, byMoves.moves());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testUnsolvable() {
+        final var result = solver.solve(TestHelper.parseGameMap("""
+            -1
+            #######
+            #A.a.@#
+            ###a@##
+            #######
+            """), Solver.Metric.MOVES);
+        assertEquals(Solver.Status.UNSOLVABLE, result.status());
+        assertNull(result.solution());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testNodeLimit() throws IOException {
+        final var result = solver.solve(TestHelper.parseGameMap(TestHelper.readBundledMap("map01")), Solver.Metric.PUSHES, 3);
+        assertEquals(Solver.Status.NODE_LIMIT, result.status());
+        assertEquals(3, result.expandedNodes());
+        assertNull(result.solution());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testSolvesInSequence() throws IOException {
+        final var gameMap = TestHelper.parseGameMap(TestHelper.readBundledMap("map01"));
+        final var first = solver.solve(gameMap, Solver.Metric.PUSHES);
+        final var second = solver.solve(gameMap, Solver.Metric.PUSHES);
+        assertNotNull(first.solution());
+        assertNotNull(second.solution());
+        assertEquals(first.solution().pushes(), second.solution().pushes());
+        assertEquals(first.storedNodes(), second.storedNodes());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testParsePack() throws IOException {
+        final var maps = ParallelSolver.parsePack(TestHelper.readBundledMap("map00") + "\n\n" + SolverTest.DETOUR + "\n");
+        assertEquals(2, maps.size());
+        assertEquals(5, maps.get(0).getUndoLimit().orElseThrow());
+        assertEquals(GameMap.parse(SolverTest.DETOUR).getDestinations(), maps.get(1).getDestinations());
+    }
+}
@@ -0,0 +1,201 @@
+package hk.ust.comp3021.solver;
+
+import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.utils.TestExtension;
+import hk.ust.comp3021.utils.TestHelper;
+import hk.ust.comp3021.utils.TestKind;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(TestExtension.class)
+class SolverTest {
+
+    /**
+     * The only push-optimal solution walks around the box to push it once,
+     * while pushing it up, right and down takes fewer moves.
+     */
+    static final String DETOUR = """
+        -1
+        #######
+        ##...##
+        #...a@#
+        #.##.A#
+        #.....#
+        #######
+        """;
+
+    @TempDir
+    private Path tempDir;
+
+    /**
+     * @return The texts of the bundled maps map00 and map01, and {@link #DETOUR}.
+     */
+    static List<String> solvableMaps() throws IOException {
+        return List.of(TestHelper.readBundledMap("map00"), TestHelper.readBundledMap("map01"), DETOUR);
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testOnePush() {
+        final var solver = new Solver(TestHelper.parseGameMap("""
+            233
+            #####
+            #Aa@#
+            #####
+            """));
+        final var result = solver.solve(Solver.Metric.PUSHES);
+
+        assertEquals(Solver.Status.SOLVED, result.status());
+        assertNotNull(result.solution());
+        assertEquals("L", result.solution().actions());
+        assertEquals(1, result.solution().pushes());
+        assertEquals("0\nL\n", result.solution().toActionFile());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @ParameterizedTest
+    @EnumSource(Solver.Metric.class)
+    void testReplaySolution(Solver.Metric metric) throws IOException {
+        for (final var mapText : solvableMaps()) {
+            final var gameMap = TestHelper.parseGameMap(mapText);
+            final var result = new Solver(gameMap).solve(metric);
+            assertEquals(Solver.Status.SOLVED, result.status());
+            assertNotNull(result.solution());
+
+            final var actionFile = tempDir.resolve("solution.txt");
+            result.solution().write(actionFile);
+            final var game = TestHelper.replay(gameMap, actionFile);
+            assertTrue(game.isWin());
+            assertEquals(result.solution().moves(), game.getProcessedActions());
+        }
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testOptimalMoves() throws IOException {
+        for (final var mapText : List.of(TestHelper.readBundledMap("map00"), DETOUR)) {
+            final var solution = new Solver(TestHelper.parseGameMap(mapText)).solve(Solver.Metric.MOVES).solution();
+            assertNotNull(solution);
+            assertEquals(fewestMoves(mapText), solution.moves());
+        }
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testMetrics() {
+        final var solver = new Solver(TestHelper.parseGameMap(DETOUR));
+        final var byPushes = solver.solve(Solver.Metric.PUSHES).solution();
+        final var byMoves = solver.solve(Solver.Metric.MOVES).solution();
+        assertNotNull(byPushes);
+        assertNotNull(byMoves);
+
+        assertEquals(1, byPushes.pushes());
+        assertEquals(10, byPushes.moves());
+        assertEquals(3, byMoves.pushes());
+        assertEquals(8, byMoves.moves());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testUnsolvable() {
+        final var deadBox = new Solver(TestHelper.parseGameMap("""
+            -1
+            #####
+            #@.A#
+            #..a#
+            #####
+            """)).solve(Solver.Metric.PUSHES);
+        assertEquals(Solver.Status.UNSOLVABLE, deadBox.status());
+        assertNull(deadBox.solution());
+
+        final var blocked = new Solver(TestHelper.parseGameMap("""
+            -1
+            #######
+            #A.a.@#
+            ###a@##
+            #######
+            """)).solve(Solver.Metric.MOVES);
+        assertEquals(Solver.Status.UNSOLVABLE, blocked.status());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testNodeLimit() throws IOException {
+        final var result = new Solver(TestHelper.parseGameMap(TestHelper.readBundledMap("map01"))).solve(Solver.Metric.PUSHES, 3);
+        assertEquals(Solver.Status.NODE_LIMIT, result.status());
+        assertEquals(3, result.expandedNodes());
+        assertNull(result.solution());
+    }
+
+    @Tag(TestKind.REGRESSION)
+    @Test
+    void testMultiplePlayers() {
+        final GameMap gameMap = TestHelper.parseGameMap("""
+            -1
+            ######
+            #Aa@.#
+            #Bb@.#
+            ######
+            """);
+        assertThrows(IllegalArgumentException.class, () -> new Solver(gameMap));
+    }
+
+    /**
+     * The number of moves of a shortest solution, by breadth-first search over moves.
+     */
+    private static int fewestMoves(String mapText) {
+        final var rows = mapText.lines().skip(1).toList();
+        final var width = rows.stream().mapToInt(String::length).max().orElse(0);
+        final var grid = new StringBuilder();
+        for (final var row : rows)
+            grid.append(String.format("%-" + width + "s", row));
+        final var start = grid.toString().replace('@', '.');
+        final var goals = new HashSet<Integer>();
+        for (int i = 0; i < grid.length(); i++) {
+            if (grid.charAt(i) == '@')
+                goals.add(i);
+        }
+        final var visited = new HashSet<String>();
+        var frontier = new ArrayDeque<String>();
+        frontier.add(start);
+        visited.add(start);
+        for (int moves = 0; !frontier.isEmpty(); moves++) {
+            final var next = new ArrayDeque<String>();
+            for (final var state : frontier) {
+                if (goals.stream().allMatch(goal -> Character.isLowerCase(state.charAt(goal))))
+                    return moves;
+                final var player = state.indexOf('A');
+                for (final var offset : new int[]{-1, 1, -width, width}) {
+                    final var cells = state.toCharArray();
+                    final var to = player + offset;
+                    if (cells[to] == 'a') {
+                        if (cells[to + offset] != '.')
+                            continue;
+                        cells[to + offset] = 'a';
+                    } else if (cells[to] != '.') {
+                        continue;
+                    }
+                    cells[to] = 'A';
+                    cells[player] = '.';
+                    final var successor = new String(cells);
+                    if (visited.add(successor))
+                        next.add(successor);
+                }
+            }
+            frontier = next;
+        }
+        return -1;
+    }
+}
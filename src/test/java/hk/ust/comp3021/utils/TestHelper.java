@@ -1,6 +1,13 @@
 package hk.ust.comp3021.utils;
 
+import hk.ust.comp3021.SokobanGameFactory;
 import hk.ust.comp3021.game.GameMap;
+import hk.ust.comp3021.replay.ReplaySokobanGame;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 
 /**
  * Helper class for testing.
@@ -13,4 +20,34 @@ public class TestHelper {
     public static GameMap parseGameMap(String mapText) {
         return GameMap.parse(mapText);
     }
+
+    /**
+     * @param name The name of a map bundled in the resources, e.g. {@code map00}.
+     * @return The map text.
+     * @throws IOException if the map cannot be read.
+     */
+    public static String readBundledMap(String name) throws IOException {
+        try (var stream = TestHelper.class.getResourceAsStream("/" + name + ".map")) {
+            if (stream == null)
+                throw new FileNotFoundException(name + ".map");
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Replay an action file on a map without rendering.
+     *
+     * @param gameMap    The map.
+     * @param actionFile The action file.
+     * @return The game, which has ended.
+     * @throws IOException if the action file cannot be read.
+     */
+    public static ReplaySokobanGame replay(GameMap gameMap, Path actionFile) throws IOException {
+        final var game = SokobanGameFactory.createReplayGame(gameMap, ReplaySokobanGame.Mode.ROUND_ROBIN, 60,
+            new String[]{actionFile.toString()},
+            ReplaySokobanGame.Options.DEFAULT.withRenderMode(ReplaySokobanGame.RenderMode.NONE),
+            SokobanGameFactory.InputKind.STREAM);
+        game.run();
+        return game;
+    }
 }